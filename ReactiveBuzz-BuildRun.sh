@@ -1,5 +1,5 @@
 #!/bin/bash
-# Java 8 required (The project uses the java.util.Base64 library)
+# Java 11 required (The project uses the java.net.http and java.util.concurrent.Flow libraries)
 # Ant 1.7 required
 ant
 java -jar ./dist/ReactiveBuzz.jar
@@ -0,0 +1,72 @@
+package com.darrenk.reactivebuzz;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.darrenk.reactivebuzz.github.GitHubRESTClient;
+import com.darrenk.reactivebuzz.mock.MockApiServer;
+import com.darrenk.reactivebuzz.transport.HttpClientTransport;
+import com.darrenk.reactivebuzz.transport.HttpTransport;
+import com.darrenk.reactivebuzz.twitter.TwitterRESTClient;
+
+/**
+ * Measures a whole ReactiveBuzz search, GitHub projects and then their Tweets, against recorded
+ * responses served from memory or by a local HTTP server
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+	@Param({"memory", "http"})
+	public String transport;
+
+	@Param({"1", "10"})
+	public int searchThreads;
+
+	private MockApiServer server;
+	private ConcurrentSearch concurrentSearch;
+
+	@Setup
+	public void setUp() throws IOException {
+		HttpTransport httpTransport;
+		if (transport.equals("http")) {
+			server = new MockApiServer();
+			server.setGitHubPages(3);
+			httpTransport = server.transport(new HttpClientTransport());
+		} else {
+			httpTransport = new FixtureTransport(new FixtureApi(3));
+		}
+		concurrentSearch = new ConcurrentSearch(new GitHubRESTClient("user", "password", httpTransport),
+				new TwitterRESTClient("key", "secret", httpTransport), searchThreads);
+	}
+
+	@TearDown
+	public void tearDown() {
+		concurrentSearch.close();
+		if (server != null) {
+			server.close();
+		}
+	}
+
+	@Benchmark
+	public Map<SearchResult, SearchResults> search() throws IOException {
+		return concurrentSearch.search("reactive", 10, 10);
+	}
+}
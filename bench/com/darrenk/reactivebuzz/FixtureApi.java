@@ -0,0 +1,60 @@
+package com.darrenk.reactivebuzz;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.darrenk.reactivebuzz.mock.MockApiServer;
+
+/**
+ * Answers GitHub and Twitter REST calls with the recorded responses of {@link MockApiServer}, in memory.
+ * GitHub repository searches return the recorded page for every page up to a page count,
+ * linking each page to the next. Twitter searches return the recorded page of Tweets.
+ * Every response allows many more searches in the rate limit window.
+ */
+public class FixtureApi {
+	private static final byte[] TWITTER_TOKEN =
+			"{\"token_type\":\"bearer\",\"access_token\":\"fixture\"}".getBytes(StandardCharsets.UTF_8);
+	private static final Pattern PAGE_PARAM = Pattern.compile("&page=(\\d+)");
+
+	private final byte[] githubPage = MockApiServer.loadFixture(MockApiServer.GITHUB_SEARCH);
+	private final byte[] twitterPage = MockApiServer.loadFixture(MockApiServer.TWITTER_SEARCH);
+	private final int githubPages;
+
+	/**
+	 * Constructor
+	 * @param githubPages The number of GitHub repository search result pages
+	 */
+	public FixtureApi(int githubPages) {
+		this.githubPages = githubPages;
+	}
+
+	/**
+	 * Answer a REST call
+	 * @param url The request URL
+	 * @param headers Receives the response headers
+	 * @return The response body
+	 */
+	public byte[] respond(String url, Map<String, List<String>> headers) {
+		if (url.endsWith("oauth2/token")) {
+			return TWITTER_TOKEN;
+		}
+		if (url.contains("api.github.com/")) {
+			headers.put("X-RateLimit-Remaining", Collections.singletonList("5000"));
+			headers.put("X-RateLimit-Reset", Collections.singletonList("0"));
+			Matcher page = PAGE_PARAM.matcher(url);
+			int pageNumber = page.find() ? Integer.parseInt(page.group(1)) : 1;
+			if (pageNumber < githubPages) {
+				String next = PAGE_PARAM.matcher(url).replaceFirst("") + "&page=" + (pageNumber + 1);
+				headers.put("Link", Collections.singletonList("<" + next + ">; rel=\"next\""));
+			}
+			return githubPage;
+		}
+		headers.put("X-Rate-Limit-Remaining", Collections.singletonList("450"));
+		headers.put("X-Rate-Limit-Reset", Collections.singletonList("0"));
+		return twitterPage;
+	}
+}
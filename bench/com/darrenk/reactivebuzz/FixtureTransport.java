@@ -0,0 +1,47 @@
+package com.darrenk.reactivebuzz;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.darrenk.reactivebuzz.transport.HttpTransport;
+
+/**
+ * An in-memory transport answering with recorded responses, for measuring the clients
+ * without the network stack
+ */
+public class FixtureTransport implements HttpTransport {
+	private final FixtureApi api;
+
+	/**
+	 * Constructor
+	 * @param api Answers the REST calls
+	 */
+	public FixtureTransport(FixtureApi api) {
+		this.api = api;
+	}
+
+	@Override
+	public InputStream send(RESTExchange exchange) {
+		return new ByteArrayInputStream(respond(exchange));
+	}
+
+	@Override
+	public CompletableFuture<byte[]> sendAsync(RESTExchange exchange) {
+		return CompletableFuture.completedFuture(respond(exchange));
+	}
+
+	private byte[] respond(RESTExchange exchange) {
+		Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+		byte[] body = api.respond(exchange.getUrl(), headers);
+		exchange.setResponseCode(HttpURLConnection.HTTP_OK);
+		for (Map.Entry<String, List<String>> header: headers.entrySet()) {
+			exchange.addResponseHeader(header.getKey(), header.getValue());
+		}
+		return body;
+	}
+}
@@ -0,0 +1,56 @@
+package com.darrenk.reactivebuzz;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.darrenk.reactivebuzz.github.GitHubRESTClient;
+
+/**
+ * Measures iterating every page of a multi-page GitHub repository search served from memory
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaginationBenchmark {
+	@Param({"1", "10"})
+	public int pages;
+
+	@Param({"0", "10"})
+	public int prefetchThreshold;
+
+	@Param({"0", "1"})
+	public int retainedPages;
+
+	private GitHubRESTClient client;
+
+	@Setup
+	public void setUp() {
+		client = new GitHubRESTClient("user", "password", new FixtureTransport(new FixtureApi(pages)));
+	}
+
+	@Benchmark
+	public void iterate(Blackhole blackhole) throws IOException {
+		SearchResults results = client.searchRepositories("reactive");
+		results.setPrefetchThreshold(prefetchThreshold);
+		results.setRetainedPages(retainedPages);
+		for (SearchResult result: results) {
+			blackhole.consume(result);
+		}
+	}
+}
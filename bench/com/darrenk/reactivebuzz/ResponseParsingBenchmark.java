@@ -0,0 +1,79 @@
+package com.darrenk.reactivebuzz;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.JSONValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.darrenk.reactivebuzz.github.GitHubRESTClient;
+import com.darrenk.reactivebuzz.mock.MockApiServer;
+import com.darrenk.reactivebuzz.twitter.TwitterRESTClient;
+
+/**
+ * Measures parsing a recorded search response page: building the whole JSON tree as getResponse() does,
+ * streaming the results array as searches do, and a whole search through a client including
+ * filtering and result construction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseParsingBenchmark {
+	@Param({"github", "twitter"})
+	public String api;
+
+	private byte[] body;
+	private String resultsName;
+	private AbstractRESTClient client;
+	private String searchPath;
+
+	@Setup
+	public void setUp() throws IOException {
+		FixtureTransport transport = new FixtureTransport(new FixtureApi(1));
+		if (api.equals("github")) {
+			body = MockApiServer.loadFixture(MockApiServer.GITHUB_SEARCH);
+			resultsName = "items";
+			client = new GitHubRESTClient("user", "password", transport);
+			searchPath = "search/repositories?sort=pushed&order=desc&q=";
+		} else {
+			body = MockApiServer.loadFixture(MockApiServer.TWITTER_SEARCH);
+			resultsName = "statuses";
+			client = new TwitterRESTClient("key", "secret", transport);
+			searchPath = "search/tweets.json?result_type=recent&count=100&q=";
+		}
+	}
+
+	@Benchmark
+	public Object parseTree() {
+		return JSONValue.parse(new String(body, StandardCharsets.UTF_8));
+	}
+
+	@Benchmark
+	public Object parseStreaming(Blackhole blackhole) throws IOException {
+		Reader reader = new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8);
+		return new SearchResponseParser(reader).parse(resultsName, (result, rawJSON) -> blackhole.consume(result));
+	}
+
+	@Benchmark
+	public SearchResults search() throws IOException {
+		return client.search(searchPath, "github reactive");
+	}
+}
@@ -0,0 +1,71 @@
+package com.darrenk.reactivebuzz;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.darrenk.reactivebuzz.github.Repository;
+import com.darrenk.reactivebuzz.mock.MockApiServer;
+import com.darrenk.reactivebuzz.twitter.Tweet;
+
+/**
+ * Measures building Tweets and Repositories from the JSON objects of a recorded search response page,
+ * and serializing their retained fields back to JSON
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchResultBenchmark {
+	private List<?> tweets;
+	private List<?> repositories;
+
+	@Setup
+	public void setUp() {
+		tweets = getResults(MockApiServer.TWITTER_SEARCH, "statuses");
+		repositories = getResults(MockApiServer.GITHUB_SEARCH, "items");
+	}
+
+	@Benchmark
+	public void createTweets(Blackhole blackhole) {
+		for (Object tweet: tweets) {
+			blackhole.consume(new Tweet((JSONObject) tweet));
+		}
+	}
+
+	@Benchmark
+	public void createRepositories(Blackhole blackhole) {
+		for (Object repository: repositories) {
+			blackhole.consume(new Repository((JSONObject) repository));
+		}
+	}
+
+	@Benchmark
+	public void serializeTweets(Blackhole blackhole) {
+		for (Object tweet: tweets) {
+			blackhole.consume(new Tweet((JSONObject) tweet).getJSONString());
+		}
+	}
+
+	private static List<?> getResults(String fixture, String resultsName) {
+		JSONObject page = (JSONObject) JSONValue.parse(new String(MockApiServer.loadFixture(fixture), StandardCharsets.UTF_8));
+		return (JSONArray) page.get(resultsName);
+	}
+}
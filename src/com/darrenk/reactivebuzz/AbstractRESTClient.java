@@ -1,21 +1,34 @@
 package com.darrenk.reactivebuzz;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
+import java.io.InterruptedIOException;
+import java.io.Reader;
 import java.net.HttpURLConnection;
-import java.net.URL;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 
-import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONValue;
 
+import com.darrenk.reactivebuzz.exception.CircuitOpenException;
 import com.darrenk.reactivebuzz.exception.SearchException;
+import com.darrenk.reactivebuzz.metrics.MeteredInputStream;
+import com.darrenk.reactivebuzz.metrics.MetricsRegistry;
+import com.darrenk.reactivebuzz.trace.Span;
+import com.darrenk.reactivebuzz.trace.Tracer;
+import com.darrenk.reactivebuzz.transport.HttpClientTransport;
+import com.darrenk.reactivebuzz.transport.HttpTransport;
 
 /**
  * An abstract class to be extended for issuing REST API search queries.
@@ -27,15 +40,20 @@ public abstract class AbstractRESTClient {
 	static final String HEADER_AUTHORIZATION = "Authorization";
 	static final String HEADER_USER_AGENT = "User-Agent";
 	static final protected String HEADER_ACCEPT = "Accept";
-	static final String HEADER_CONTENT_LENGTH = "Content-Length";
+	static final protected String HEADER_CONTENT_TYPE = "Content-Type";
+	static final String HEADER_IF_NONE_MATCH = "If-None-Match";
 
-	protected HttpURLConnection connection;
-	private String authHeaderValue;
+	private final HttpTransport transport;
+	private volatile String authHeaderValue;
 	private final String userAgent;
-	private String baseApiUrl;
-	protected long remainingSearchRequests;
-	protected Long searchResetTime;
-	private String nextPageUrl;
+	private volatile String baseApiUrl;
+	private volatile boolean retainRawResults;
+	private volatile SearchResponseCache responseCache;
+	private volatile long responseCacheTtlMillis;
+	private volatile MetricsRegistry metrics = MetricsRegistry.NOOP;
+	private volatile Tracer tracer = Tracer.NOOP;
+	private volatile RetryPolicy retryPolicy = RetryPolicy.NONE;
+	private volatile boolean circuitBreaking;
 	
 	/**
 	 * Encode authentication parameters
@@ -47,15 +65,16 @@ public abstract class AbstractRESTClient {
 	
 	/**
 	 * Add header properties for the HTTP request
+	 * @param exchange The REST call to add the headers to
 	 */
-	abstract protected void setRequestProperties();
+	abstract protected void setRequestProperties(RESTExchange exchange);
 	
 	/**
 	 * Get the HTTP API URL for the next query result page
-	 * @param queryResult The JSON object returned from the previous query
+	 * @param exchange The completed REST call for the previous query
 	 * @return The HTTP API URL for the next query result page
 	 */
-	abstract protected String getNextPageUrl(JSONObject queryResult);
+	abstract protected String getNextPageUrl(RESTExchange exchange);
 	
 	/**
 	 * Determine if a result is to be skipped from the results returned to a user.
@@ -65,9 +84,51 @@ public abstract class AbstractRESTClient {
 	abstract protected boolean filterResult(JSONObject result);
 	
 	/**
-	 * Set the search API rate limits from the last REST API response
+	 * Set the search API rate limits from a REST API response
+	 * @param exchange The completed REST call
 	 */
-	abstract protected void setSearchRateLimits();
+	abstract protected void setSearchRateLimits(RESTExchange exchange);
+	
+	/**
+	 * Read any search metadata the client tracks from a REST API search response.
+	 * Called for every search page parsed, including pages served from the response cache.
+	 * Does nothing by default.
+	 * @param exchange The completed REST call with its JSON response, less the query results
+	 */
+	protected void readSearchMetadata(RESTExchange exchange) {
+	}
+	
+	/**
+	 * Determine if the server reported that a search response page is missing results,
+	 * such as when the search timed out on the server. Pages are complete by default.
+	 * @param exchange The completed REST call with its JSON response, less the query results
+	 * @return True if the page is missing results
+	 */
+	protected boolean isIncompleteResults(RESTExchange exchange) {
+		return false;
+	}
+	
+	/**
+	 * Get the HTTP API URL of the search result page following a page that could not be retrieved,
+	 * so that a partial result set can continue past it. By default pages cannot be skipped.
+	 * @param pageUrl The HTTP API URL of the page that could not be retrieved
+	 * @return The HTTP API URL of the following page or null if it is not known
+	 */
+	protected String getFollowingPageUrl(String pageUrl) {
+		return null;
+	}
+	
+	/**
+	 * Get the Authorization header value a REST call is sent with, such as an access token fetched
+	 * the first time one is needed. It is called just before each call is sent, so a token request
+	 * made here uses the client's configured circuit breakers, retries and metrics.
+	 * @param exchange The REST call
+	 * @return The header value, or null to send the call with the value set when it was created
+	 * @throws IOException If the authorization cannot be obtained
+	 */
+	protected String getAuthorization(RESTExchange exchange) throws IOException {
+		return null;
+	}
 	
 	/**
 	 * Issue a REST API query to get the current REST API search rate limits. 
@@ -89,22 +150,55 @@ public abstract class AbstractRESTClient {
 	abstract protected SearchResult createResult(JSONObject result);
 	
 	/**
-	 * Constructor to use for authenticated REST calls
+	 * Create a ReactiveBuzz SearchResult object from a query result JSONObject
+	 * and the JSON text it was parsed from. Result types that can return the
+	 * original JSON text without serializing it again override this method.
+	 * @param result The JSONObject query result
+	 * @param rawJSON The JSON text of the query result or null if it is not to be retained
+	 * @return A ReactiveBuzz SearchResult object
+	 */
+	protected SearchResult createResult(JSONObject result, String rawJSON) {
+		return createResult(result);
+	}
+	
+	/**
+	 * Constructor to use for authenticated REST calls with the default HTTP transport
 	 * @param key Username or key
 	 * @param token Password or secret
 	 * @param baseApiUrl The base URL used for all REST API calls
 	 */
 	public AbstractRESTClient(String key, String token, String baseApiUrl) {
-		this(baseApiUrl);
+		this(key, token, baseApiUrl, HttpClientTransport.getDefault());
+	}
+	
+	/**
+	 * Constructor to use for unauthenticated REST calls with the default HTTP transport
+	 * @param baseApiUrl The base URL used for all REST API calls
+	 */
+	public AbstractRESTClient(String baseApiUrl) {
+		this(baseApiUrl, HttpClientTransport.getDefault());
+	}
+	
+	/**
+	 * Constructor to use for authenticated REST calls
+	 * @param key Username or key
+	 * @param token Password or secret
+	 * @param baseApiUrl The base URL used for all REST API calls
+	 * @param transport The HTTP transport used to send requests
+	 */
+	public AbstractRESTClient(String key, String token, String baseApiUrl, HttpTransport transport) {
+		this(baseApiUrl, transport);
 		setAuthHeaderValue(encode(key, token));
 	}
 	
 	/**
 	 * Constructor to use for unauthenticated REST calls
 	 * @param baseApiUrl The base URL used for all REST API calls
+	 * @param transport The HTTP transport used to send requests
 	 */
-	public AbstractRESTClient(String baseApiUrl) {
+	public AbstractRESTClient(String baseApiUrl, HttpTransport transport) {
 		setBaseApiUrl(baseApiUrl);
+		this.transport = transport;
 		userAgent = this.getClass().getPackage().getName();
 	}
 	
@@ -118,31 +212,19 @@ public abstract class AbstractRESTClient {
 	}
 	
 	/**
-	 * Create a HTTP connection with required headers
+	 * Create a REST call with required headers
 	 * @param url The HTTP endpoint
 	 * @param method The REST API method that will be called
-	 * @throws IOException
+	 * @return The new REST call
 	 */
-	protected void createConnection(String url, String method) throws IOException {
-		connection = (HttpURLConnection) new URL(url).openConnection();
-		connection.setRequestMethod(method);
-		connection.setRequestProperty(HEADER_USER_AGENT, userAgent);
-		if (authHeaderValue != null)
-			connection.setRequestProperty(HEADER_AUTHORIZATION, authHeaderValue);
-		setRequestProperties();
-	}
-	
-	/**
-	 * Add body text to a HTTP request
-	 * @param bodyText The body text to add
-	 * @throws IOException
-	 */
-	protected void setBody(String bodyText) throws IOException {
-		connection.setDoOutput(true);
-		byte[] bodyTextBytes = bodyText.getBytes();
-		connection.setRequestProperty(HEADER_CONTENT_LENGTH, String.valueOf(bodyTextBytes.length));
-		OutputStream os = (OutputStream) connection.getOutputStream();
-		os.write(bodyTextBytes);
+	protected RESTExchange createExchange(String url, String method) {
+		RESTExchange exchange = new RESTExchange(url, method);
+		exchange.setRequestHeader(HEADER_USER_AGENT, userAgent);
+		String auth = authHeaderValue;
+		if (auth != null)
+			exchange.setRequestHeader(HEADER_AUTHORIZATION, auth);
+		setRequestProperties(exchange);
+		return exchange;
 	}
 	
 	/**
@@ -154,14 +236,12 @@ public abstract class AbstractRESTClient {
 	}
 
 	/**
-	 * Issue a REST API query
-	 * TODO: Handle the incomplete results / timeout case
+	 * Issue a REST API query. Pages the server reports are missing results are counted by the
+	 * result set rather than failing.
 	 */
 	public SearchResults search(String apiPath, String query) throws IOException {
-		checkSearchRateLimits();
 		String urlQuery = URLEncoder.encode(query, "UTF-8");
-		createConnection(getUrl(apiPath) + urlQuery, HTTP_GET);
-		return search();
+		return search(createExchange(getUrl(apiPath) + urlQuery, HTTP_GET));
 	}
 	
 	/**
@@ -171,12 +251,16 @@ public abstract class AbstractRESTClient {
 	 * @throws IOException
 	 */
 	public boolean getNextSearchResults(SearchResults results) throws IOException {
-		checkSearchRateLimits();
 		int nResults = results.size();
-		// While loop in case filtering removes all results from a page
-		while (nextPageUrl != null && results.size() == nResults) {
-			createConnection(nextPageUrl, HTTP_GET);
-			results.addAll(search());
+		if (results.getNextPageUrl() == null) {
+			return false;
+		}
+		try (Span span = tracer.start("next page", "rest")) {
+			// While loop in case filtering removes all results from a page
+			while (results.getNextPageUrl() != null && results.size() == nResults) {
+				results.addAll(search(createExchange(results.getNextPageUrl(), HTTP_GET)));
+			}
+			span.tag("results", results.size() - nResults);
 		}
 		
 		return results.size() > nResults;
@@ -184,68 +268,667 @@ public abstract class AbstractRESTClient {
 	
 	/**
 	 * Issues the REST search, determines new search rate limits, and converts the JSON results
-	 * to ReactiveBuzz SearchResult objects
+	 * to ReactiveBuzz SearchResult objects.
+	 * A fresh cached response is used without issuing the search or checking the rate limits.
+	 * @param exchange The REST call to issue
 	 * @return a new SearchResults containing the SearchResult objects.
 	 */
-	private SearchResults search() throws IOException {
+	private SearchResults search(RESTExchange exchange) throws IOException {
+		try (Span span = tracer.start(getEndpoint(exchange.getUrl()), "rest")) {
+			span.tag("url", exchange.getUrl());
+			try {
+				SearchResults results = searchPage(exchange, span);
+				span.tag("status", exchange.getResponseCode()).tag("results", results.size());
+				return results;
+			} catch (IOException | RuntimeException e) {
+				span.tag("error", e.toString());
+				throw e;
+			}
+		}
+	}
+	
+	/* Issue a REST search page request or answer it from the cache, tagging the trace span with how it was answered
+	 */
+	private SearchResults searchPage(RESTExchange exchange, Span span) throws IOException {
+		MetricsRegistry metrics = this.metrics;
+		String endpoint = getEndpoint(exchange.getUrl());
+		SearchResponseCache cache = responseCache;
+		SearchResponseCache.Entry cached = cache == null ? null : cache.get(exchange.getUrl());
+		if (cached != null && cached.isFresh()) {
+			metrics.increment(MetricsRegistry.CACHE_HITS, endpoint, 1);
+			span.tag("cache", "hit");
+			return parseCachedSearchResults(exchange, cached, false);
+		}
+		if (cached != null && isCircuitOpen(endpoint)) {
+			metrics.increment(MetricsRegistry.CACHE_STALE_HITS, endpoint, 1);
+			span.tag("cache", "stale");
+			return parseCachedSearchResults(exchange, cached, false);
+		}
+		long waitStart = System.nanoTime();
+		try (Span wait = tracer.start("rate limit wait", "ratelimit")) {
+			wait.tag("endpoint", endpoint);
+			checkSearchRateLimits();
+		}
+		long start = System.nanoTime();
+		metrics.record(MetricsRegistry.RATE_LIMIT_WAIT_TIME, endpoint, start - waitStart);
+		exchange.setRateLimited(true);
+		setConditionalHeaders(exchange, cached);
+		MeteredInputStream metered = new MeteredInputStream(send(exchange, metrics, endpoint));
+		metrics.record(MetricsRegistry.HEADERS_TIME, endpoint, System.nanoTime() - start);
+		InputStream body = metered;
+		if (cached != null && exchange.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+			body.close();
+			metrics.increment(MetricsRegistry.CACHE_REVALIDATIONS, endpoint, 1);
+			span.tag("cache", "revalidated");
+			return parseCachedSearchResults(exchange, cache.revalidate(cached, exchange, responseCacheTtlMillis), true);
+		}
+		if (cache != null && exchange.getResponseCode() == HttpURLConnection.HTTP_OK) {
+			body = cache.record(exchange, body, responseCacheTtlMillis);
+		}
+		try (Reader reader = new InputStreamReader(body, StandardCharsets.UTF_8)) {
+			long parseStart = System.nanoTime();
+			SearchResults results = parseSearchResults(exchange, reader, true);
+			if (body instanceof SearchResponseCache.Recorder) {
+				((SearchResponseCache.Recorder) body).commit();
+			}
+			// The body is read as it is parsed
+			long readNanos = metered.getReadNanos();
+			metrics.record(MetricsRegistry.BODY_TIME, endpoint, readNanos);
+			metrics.record(MetricsRegistry.RESPONSE_TIME, endpoint, parseStart - start + readNanos);
+			metrics.record(MetricsRegistry.PARSE_TIME, endpoint, System.nanoTime() - parseStart - readNanos);
+			metrics.record(MetricsRegistry.RESPONSE_BYTES, endpoint, metered.getBytes());
+			return results;
+		}
+	}
+	
+	/* Send a request unless the circuit breaker of its endpoint is open, recording the outcome in the breaker
+	 */
+	private InputStream send(RESTExchange exchange, MetricsRegistry metrics, String endpoint) throws IOException {
+		authorize(exchange);
+		CircuitBreaker breaker = acquireCircuitBreaker(metrics, endpoint);
+		if (breaker == null) {
+			return sendRetrying(exchange, metrics, endpoint);
+		}
+		try {
+			InputStream body = sendRetrying(exchange, metrics, endpoint);
+			recordOutcome(breaker, exchange, null);
+			return body;
+		} catch (IOException | RuntimeException e) {
+			recordOutcome(breaker, exchange, e);
+			throw e;
+		}
+	}
+	
+	/* Send a request without blocking unless the circuit breaker of its endpoint is open,
+	 * recording the outcome in the breaker
+	 */
+	private CompletableFuture<byte[]> sendAsync(RESTExchange exchange, MetricsRegistry metrics, String endpoint) {
+		CircuitBreaker breaker;
+		try {
+			authorize(exchange);
+			breaker = acquireCircuitBreaker(metrics, endpoint);
+		} catch (IOException | CircuitOpenException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+		if (breaker == null) {
+			return sendRetryingAsync(exchange, metrics, endpoint);
+		}
+		return sendRetryingAsync(exchange, metrics, endpoint).whenComplete((body, e) ->
+				recordOutcome(breaker, exchange, e));
+	}
+	
+	/* Set the Authorization header of a call about to be sent if the client supplies one
+	 */
+	private void authorize(RESTExchange exchange) throws IOException {
+		String auth = getAuthorization(exchange);
+		if (auth != null) {
+			exchange.setRequestHeader(HEADER_AUTHORIZATION, auth);
+		}
+	}
+	
+	/* Get the circuit breaker of an endpoint and ask to make a call
+	 * @return The breaker or null if circuit breaking is off
+	 * @throws CircuitOpenException If the breaker is open
+	 */
+	private CircuitBreaker acquireCircuitBreaker(MetricsRegistry metrics, String endpoint) {
+		if (!circuitBreaking) {
+			return null;
+		}
+		CircuitBreaker breaker = getCircuitBreaker(endpoint);
+		if (!breaker.tryAcquire()) {
+			metrics.increment(MetricsRegistry.CIRCUIT_REJECTIONS, endpoint, 1);
+			throw new CircuitOpenException("Circuit breaker open for " + endpoint);
+		}
+		return breaker;
+	}
+	
+	/* Record a failure to send a request or a server error response as a failed call.
+	 * Rate limited responses are left to the rate limit governor.
+	 */
+	private static void recordOutcome(CircuitBreaker breaker, RESTExchange exchange, Throwable failure) {
+		if (failure != null || exchange.getResponseCode() >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+			breaker.onFailure();
+		} else {
+			breaker.onSuccess();
+		}
+	}
+	
+	/* True if the circuit breaker of an endpoint would reject a call now
+	 */
+	private boolean isCircuitOpen(String endpoint) {
+		return circuitBreaking && getCircuitBreaker(endpoint).isOpen();
+	}
+	
+	/* Send a request, counting failures. GET requests are retried and hedged as the retry policy allows.
+	 */
+	private InputStream sendRetrying(RESTExchange exchange, MetricsRegistry metrics, String endpoint) throws IOException {
+		RetryPolicy policy = retryPolicy;
+		if (HTTP_GET.equals(exchange.getMethod()) && policy.isHedging()) {
+			// Hedged requests race asynchronously, so wait for the winner
+			try {
+				return new ByteArrayInputStream(sendRetryingAsync(exchange, metrics, endpoint).get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted waiting for " + exchange.getUrl());
+			} catch (ExecutionException e) {
+				Throwable cause = RetryPolicy.unwrap(e);
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw new SearchException(cause);
+			}
+		}
+		for (int attempt = 0;; attempt++) {
+			long delay;
+			try {
+				InputStream body = transport.send(exchange);
+				delay = HTTP_GET.equals(exchange.getMethod()) ? policy.getRetryDelay(exchange, attempt) : -1;
+				if (delay < 0) {
+					return body;
+				}
+				body.close();
+			} catch (IOException | RuntimeException e) {
+				delay = HTTP_GET.equals(exchange.getMethod()) ? policy.getRetryDelay(e, attempt) : -1;
+				if (delay < 0) {
+					metrics.increment(MetricsRegistry.ERRORS, endpoint, 1);
+					throw e;
+				}
+			}
+			metrics.increment(MetricsRegistry.RETRIES, endpoint, 1);
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted waiting to retry " + exchange.getUrl());
+			}
+			exchange.clearResponse();
+			if (exchange.isRateLimited()) {
+				checkSearchRateLimits();
+			}
+		}
+	}
+	
+	/* The host and path of a URL without the scheme or query, identifying the REST API endpoint in metrics
+	 */
+	static String getEndpoint(String url) {
+		int start = url.indexOf("://");
+		start = start < 0 ? 0 : start + 3;
+		int end = url.indexOf('?', start);
+		return url.substring(start, end < 0 ? url.length() : end);
+	}
+	
+	/* Ask the server to only return a cached search response if it has been modified
+	 */
+	private static void setConditionalHeaders(RESTExchange exchange, SearchResponseCache.Entry cached) {
+		if (cached != null && cached.getETag() != null) {
+			exchange.setRequestHeader(HEADER_IF_NONE_MATCH, cached.getETag());
+		}
+	}
+	
+	/* Parse the results of a REST search from a cached response.
+	 * The cached response headers are added to those returned by a revalidation request.
+	 * The rate limits are only updated when the server was called.
+	 */
+	private SearchResults parseCachedSearchResults(RESTExchange exchange, SearchResponseCache.Entry cached,
+			boolean revalidated) throws IOException {
+		exchange.setResponseCode(HttpURLConnection.HTTP_OK);
+		for (Map.Entry<String, List<String>> header: cached.getHeaders().entrySet()) {
+			if (exchange.getResponseHeader(header.getKey()) == null) {
+				exchange.addResponseHeader(header.getKey(), header.getValue());
+			}
+		}
+		return parseSearchResults(exchange,
+				new InputStreamReader(new ByteArrayInputStream(cached.getBody()), StandardCharsets.UTF_8), revalidated);
+	}
+	
+	/* Check the response code of a REST search and stream its JSON results to a new SearchResults.
+	 * Each result is filtered and converted as it is read so the whole response is never held in memory.
+	 */
+	private SearchResults parseSearchResults(RESTExchange exchange, Reader reader,
+			boolean updateRateLimits) throws IOException {
+		MetricsRegistry metrics = this.metrics;
+		String endpoint = getEndpoint(exchange.getUrl());
+		if (exchange.getResponseCode() != HttpURLConnection.HTTP_OK) {
+			throw getResponseError(metrics, endpoint, readText(reader));
+		}
 		List<SearchResult> searchResults = new ArrayList<SearchResult>();
-		JSONObject queryResult = getResponse(HttpURLConnection.HTTP_OK);
-		JSONArray jsonResults = (JSONArray) queryResult.get(getQueryResultsObjectName());
-		for (Object jsonResult: jsonResults) {
-			if (!filterResult((JSONObject) jsonResult)) {
-				searchResults.add(createResult((JSONObject) jsonResult));
+		boolean retainRaw = retainRawResults;
+		int[] filtered = new int[1];
+		JSONObject queryResult = new SearchResponseParser(reader).parse(getQueryResultsObjectName(), (jsonResult, rawJSON) -> {
+			if (!filterResult(jsonResult)) {
+				searchResults.add(createResult(jsonResult, retainRaw ? rawJSON : null));
+			} else {
+				filtered[0]++;
 			}
+		});
+		metrics.increment(MetricsRegistry.PAGES, endpoint, 1);
+		metrics.increment(MetricsRegistry.RESULTS_KEPT, endpoint, searchResults.size());
+		metrics.increment(MetricsRegistry.RESULTS_FILTERED, endpoint, filtered[0]);
+		exchange.setResponse(queryResult);
+		exchange.setNextPageUrl(getNextPageUrl(exchange));
+		readSearchMetadata(exchange);
+		if (updateRateLimits) {
+			setSearchRateLimits(exchange);
 		}
-		nextPageUrl = getNextPageUrl(queryResult);
-		setSearchRateLimits();
 		
-		return new SearchResults(this, searchResults, hasNextResultsPage());
+		SearchResults page = new SearchResults(this, searchResults, exchange.getNextPageUrl());
+		if (isIncompleteResults(exchange)) {
+			metrics.increment(MetricsRegistry.INCOMPLETE_PAGES, endpoint, 1);
+			page.addIncompletePage();
+		}
+		return page;
 	}
 
 	/**
-	 * Get the REST API response, check for errors and encode the response to JSON
-	 * @param expectedResponse
-	 * @return
-	 * @throws IOException
+	 * Issue a REST API query without blocking the calling thread
+	 * @param apiPath REST API method
+	 * @param query The query parameter
+	 * @return A future completed with the first page of search results
 	 */
-	protected JSONObject getResponse(int expectedResponse) throws IOException {
-		try {
-			if (connection.getResponseCode() == expectedResponse) {
-				BufferedReader br = new BufferedReader(
-			             new InputStreamReader(connection.getInputStream()));
-	            StringBuilder sb = new StringBuilder();
-	            String line;
-	            while ((line = br.readLine()) != null) {
-	                sb.append(line);
-	            }
-	            br.close();
-	    		return (JSONObject) JSONValue.parse(sb.toString());
+	public CompletableFuture<SearchResults> searchAsync(String apiPath, String query) {
+		return searchPageAsync(getUrl(apiPath) + URLEncoder.encode(query, StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Get the next page of search results without blocking the calling thread
+	 * and add them to the cached results.
+	 * @param results The existing result set. It must not be iterated until the future completes.
+	 * @return A future completed with true if new results are returned
+	 */
+	public CompletableFuture<Boolean> getNextSearchResultsAsync(SearchResults results) {
+		int nResults = results.size();
+		if (results.getNextPageUrl() == null) {
+			return CompletableFuture.completedFuture(false);
+		}
+		return searchPageAsync(results.getNextPageUrl()).thenCompose(page -> {
+			results.addAll(page);
+			// Keep going in case filtering removes all results from a page
+			if (results.size() == nResults) {
+				return getNextSearchResultsAsync(results);
+			}
+			return CompletableFuture.completedFuture(true);
+		});
+	}
+	
+	/**
+	 * Publish the results of a REST API query, requesting result pages as subscribers demand them.
+	 * The query is issued separately for each subscriber.
+	 * @param apiPath REST API method
+	 * @param query The query parameter
+	 * @return A publisher of search results
+	 */
+	public Flow.Publisher<SearchResult> publish(String apiPath, String query) {
+		return new SearchResultPublisher(this, apiPath, query);
+	}
+	
+	/**
+	 * Issue a single REST search page query once the rate limits allow it.
+	 * A fresh cached response is used without issuing the query or checking the rate limits.
+	 * @param url The HTTP API URL of the search page
+	 * @return A future completed with a new SearchResults containing the SearchResult objects
+	 */
+	CompletableFuture<SearchResults> searchPageAsync(String url) {
+		RESTExchange exchange = createExchange(url, HTTP_GET);
+		MetricsRegistry metrics = this.metrics;
+		String endpoint = getEndpoint(url);
+		// Ended by whichever thread completes the page
+		Span span = tracer.startAsync(endpoint, "rest").tag("url", url);
+		SearchResponseCache cache = responseCache;
+		SearchResponseCache.Entry cached = cache == null ? null : cache.get(url);
+		CompletableFuture<SearchResults> page;
+		boolean stale = cached != null && !cached.isFresh() && isCircuitOpen(endpoint);
+		if (cached != null && (cached.isFresh() || stale)) {
+			metrics.increment(stale ? MetricsRegistry.CACHE_STALE_HITS : MetricsRegistry.CACHE_HITS, endpoint, 1);
+			span.tag("cache", stale ? "stale" : "hit");
+			try {
+				page = CompletableFuture.completedFuture(parseCachedSearchResults(exchange, cached, false));
+			} catch (IOException | RuntimeException e) {
+				page = CompletableFuture.failedFuture(e);
+			}
+		} else {
+			page = searchPageAsync(exchange, cache, cached, metrics, endpoint, span);
+		}
+		return page.whenComplete((results, e) -> {
+			if (e != null) {
+				span.tag("error", e.toString());
+			} else {
+				span.tag("status", exchange.getResponseCode()).tag("results", results.size());
+			}
+			span.close();
+		});
+	}
+	
+	/* Issue a single REST search page query once the rate limits allow it, revalidating a stale cached page
+	 */
+	private CompletableFuture<SearchResults> searchPageAsync(RESTExchange exchange, SearchResponseCache cache,
+			SearchResponseCache.Entry cached, MetricsRegistry metrics, String endpoint, Span span) {
+		long waitStart = System.nanoTime();
+		return checkSearchRateLimitsAsync().thenCompose(ignored -> {
+			long start = System.nanoTime();
+			metrics.record(MetricsRegistry.RATE_LIMIT_WAIT_TIME, endpoint, start - waitStart);
+			exchange.setRateLimited(true);
+			setConditionalHeaders(exchange, cached);
+			return sendAsync(exchange, metrics, endpoint).thenApply(body -> {
+				long parseStart = System.nanoTime();
+				metrics.record(MetricsRegistry.RESPONSE_TIME, endpoint, parseStart - start);
+				metrics.record(MetricsRegistry.RESPONSE_BYTES, endpoint, body.length);
+				try {
+					if (cached != null && exchange.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+						metrics.increment(MetricsRegistry.CACHE_REVALIDATIONS, endpoint, 1);
+						span.tag("cache", "revalidated");
+						return parseCachedSearchResults(exchange,
+								cache.revalidate(cached, exchange, responseCacheTtlMillis), true);
+					}
+					SearchResults results = parseSearchResults(exchange,
+							new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8), true);
+					metrics.record(MetricsRegistry.PARSE_TIME, endpoint, System.nanoTime() - parseStart);
+					if (cache != null) {
+						cache.put(exchange, body, responseCacheTtlMillis);
+					}
+					return results;
+				} catch (IOException e) {
+					throw new SearchException(e);
+				}
+			});
+		});
+	}
+	
+	/* Send a request without blocking, counting failures. GET requests are retried and hedged as the retry policy allows.
+	 */
+	private CompletableFuture<byte[]> sendRetryingAsync(RESTExchange exchange, MetricsRegistry metrics, String endpoint) {
+		if (!HTTP_GET.equals(exchange.getMethod())) {
+			return transport.sendAsync(exchange).whenComplete((body, e) -> {
+				if (e != null) {
+					metrics.increment(MetricsRegistry.ERRORS, endpoint, 1);
+				}
+			});
+		}
+		return sendRetryingAsync(exchange, retryPolicy, metrics, endpoint, 0);
+	}
+	
+	/* Send a GET request without blocking and send it again after a delay while the retry policy allows
+	 */
+	private CompletableFuture<byte[]> sendRetryingAsync(RESTExchange exchange, RetryPolicy policy,
+			MetricsRegistry metrics, String endpoint, int attempt) {
+		CompletableFuture<byte[]> sent = policy.isHedging() ?
+				sendHedged(exchange, policy, metrics, endpoint) : transport.sendAsync(exchange);
+		return sent.handle((body, e) -> {
+			long delay = e == null ? policy.getRetryDelay(exchange, attempt) : policy.getRetryDelay(e, attempt);
+			if (delay < 0) {
+				if (e != null) {
+					metrics.increment(MetricsRegistry.ERRORS, endpoint, 1);
+					return CompletableFuture.<byte[]>failedFuture(RetryPolicy.unwrap(e));
+				}
+				return CompletableFuture.completedFuture(body);
+			}
+			metrics.increment(MetricsRegistry.RETRIES, endpoint, 1);
+			Executor delayed = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS);
+			return CompletableFuture.runAsync(exchange::clearResponse, delayed)
+					.thenCompose(ignored -> exchange.isRateLimited() ?
+							checkSearchRateLimitsAsync() : CompletableFuture.<Void>completedFuture(null))
+					.thenCompose(ignored -> sendRetryingAsync(exchange, policy, metrics, endpoint, attempt + 1));
+		}).thenCompose(retried -> retried);
+	}
+	
+	/* Send a GET request and, if no response arrives within the hedge delay of its endpoint, a duplicate.
+	 * A rate limited request is only duplicated if the search rate limit budget allows it straight away.
+	 * The first response is recorded in the exchange. The request fails only if every request sent fails.
+	 */
+	private CompletableFuture<byte[]> sendHedged(RESTExchange exchange, RetryPolicy policy,
+			MetricsRegistry metrics, String endpoint) {
+		long hedgeDelay = policy.getHedgeDelayNanos(endpoint);
+		if (hedgeDelay < 0) {
+			long start = System.nanoTime();
+			return transport.sendAsync(exchange).whenComplete((body, e) -> {
+				if (e == null) {
+					policy.recordLatency(endpoint, System.nanoTime() - start);
+				}
+			});
+		}
+		HedgedRequest hedged = new HedgedRequest(exchange, policy, metrics, endpoint);
+		hedged.send();
+		CompletableFuture.delayedExecutor(hedgeDelay, TimeUnit.NANOSECONDS).execute(hedged::hedge);
+		return hedged.response;
+	}
+	
+	/**
+	 * A GET request that may be sent twice, each time with a copy of the exchange
+	 * so that the responses do not mix
+	 */
+	private final class HedgedRequest {
+		private final RESTExchange exchange;
+		private final RetryPolicy policy;
+		private final MetricsRegistry metrics;
+		private final String endpoint;
+		private final CompletableFuture<byte[]> response = new CompletableFuture<byte[]>();
+		// Guarded by this
+		private int outstanding;
+		private boolean hedged;
+		private boolean done;
+
+		HedgedRequest(RESTExchange exchange, RetryPolicy policy, MetricsRegistry metrics, String endpoint) {
+			this.exchange = exchange;
+			this.policy = policy;
+			this.metrics = metrics;
+			this.endpoint = endpoint;
+		}
+
+		/* Send a copy of the request
+		 */
+		void send() {
+			synchronized (this) {
+				outstanding++;
+			}
+			RESTExchange copy = exchange.copyRequest();
+			long start = System.nanoTime();
+			transport.sendAsync(copy).whenComplete((body, e) -> {
+				if (e == null) {
+					policy.recordLatency(endpoint, System.nanoTime() - start);
+				}
+				complete(copy, body, e);
+			});
+		}
+
+		/* Send the duplicate request if there is still no response and the rate limit allows it
+		 */
+		void hedge() {
+			synchronized (this) {
+				if (done || hedged) {
+					return;
+				}
+				hedged = true;
+			}
+			if (exchange.isRateLimited() && !getRateLimitGovernor().tryAcquire()) {
+				return;
+			}
+			metrics.increment(MetricsRegistry.HEDGES, endpoint, 1);
+			send();
+		}
+
+		private void complete(RESTExchange copy, byte[] body, Throwable e) {
+			synchronized (this) {
+				outstanding--;
+				if (done || (e != null && outstanding > 0)) {
+					return;
+				}
+				done = true;
+				if (e == null) {
+					exchange.copyResponse(copy);
+				}
+			}
+			if (e == null) {
+				response.complete(body);
+			} else {
+				response.completeExceptionally(e);
+			}
+		}
+	}
+	
+	/**
+	 * Issue a REST call without blocking the calling thread, check for errors and encode the response to JSON.
+	 * The response code, headers and JSON are recorded in the exchange.
+	 * @param exchange The REST call to issue
+	 * @param expectedResponse The HTTP response code expected for success
+	 * @return A future completed with the JSON response or a SearchException
+	 */
+	protected CompletableFuture<JSONObject> getResponseAsync(RESTExchange exchange, int expectedResponse) {
+		MetricsRegistry metrics = this.metrics;
+		String endpoint = getEndpoint(exchange.getUrl());
+		long start = System.nanoTime();
+		return sendAsync(exchange, metrics, endpoint).thenApply(body -> {
+			metrics.record(MetricsRegistry.RESPONSE_TIME, endpoint, System.nanoTime() - start);
+			metrics.record(MetricsRegistry.RESPONSE_BYTES, endpoint, body.length);
+			String text = new String(body, StandardCharsets.UTF_8);
+			if (exchange.getResponseCode() != expectedResponse) {
+				throw getResponseError(metrics, endpoint, text);
 			}
-			// Error condition
-			InputStream is = connection.getErrorStream();
-			if (is == null) {
-				is = connection.getInputStream();
+			exchange.setResponse((JSONObject) JSONValue.parse(text));
+			return exchange.getResponse();
+		});
+	}
+	
+	/**
+	 * Issue a REST call, check for errors and encode the response to JSON.
+	 * The response code, headers and JSON are recorded in the exchange.
+	 * @param exchange The REST call to issue
+	 * @param expectedResponse The HTTP response code expected for success
+	 * @return The JSON response
+	 * @throws IOException
+	 */
+	protected JSONObject getResponse(RESTExchange exchange, int expectedResponse) throws IOException {
+		MetricsRegistry metrics = this.metrics;
+		String endpoint = getEndpoint(exchange.getUrl());
+		long start = System.nanoTime();
+		MeteredInputStream body = new MeteredInputStream(send(exchange, metrics, endpoint));
+		metrics.record(MetricsRegistry.HEADERS_TIME, endpoint, System.nanoTime() - start);
+		try (Reader reader = new InputStreamReader(body, StandardCharsets.UTF_8)) {
+			String text = readText(reader);
+			metrics.record(MetricsRegistry.BODY_TIME, endpoint, body.getReadNanos());
+			metrics.record(MetricsRegistry.RESPONSE_TIME, endpoint, System.nanoTime() - start);
+			metrics.record(MetricsRegistry.RESPONSE_BYTES, endpoint, body.getBytes());
+			if (exchange.getResponseCode() == expectedResponse) {
+				exchange.setResponse((JSONObject) JSONValue.parse(text));
+				return exchange.getResponse();
 			}
-			BufferedReader br = new BufferedReader(new InputStreamReader(is));
-			StringBuilder sb = new StringBuilder();
-	  		String line;
-	  		while ((line = br.readLine()) != null) {
-	  			sb.append(line);
-	  		}
-	  		br.close();
-	  		// TODO: Parse the JSON error object
-	  		throw new SearchException(sb.toString());
+			throw getResponseError(metrics, endpoint, text);
 		}
-		finally {
-			connection.disconnect();
+	}
+
+	/* Count an error response from an endpoint and create the exception reporting it
+	 */
+	private static SearchException getResponseError(MetricsRegistry metrics, String endpoint, String text) {
+		metrics.increment(MetricsRegistry.ERRORS, endpoint, 1);
+		// TODO: Parse the JSON error object
+		return new SearchException(text);
+	}
+	
+	/* Read all of the text from a reader
+	 */
+	private static String readText(Reader reader) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		char[] buffer = new char[4096];
+		int n;
+		while ((n = reader.read(buffer)) != -1) {
+			sb.append(buffer, 0, n);
 		}
+		return sb.toString();
 	}
 	
 	/**
-	 * @return True if there are additional pages of search results
+	 * Set whether search results keep the JSON text they were parsed from.
+	 * Results that support it then return that text from getJSONString() without serializing again,
+	 * at the cost of holding the full JSON text of each result in memory.
+	 * @param retainRawResults True to keep the JSON text of search results
+	 */
+	public void setRetainRawResults(boolean retainRawResults) {
+		this.retainRawResults = retainRawResults;
+	}
+
+	/**
+	 * Set the cache used for search response pages. Searches answered by a fresh cached page
+	 * do not use the search rate limit. Stale pages with an ETag are revalidated with a
+	 * conditional request and reused if the server reports they have not been modified.
+	 * @param responseCache The cache, which may be shared with other clients, or null to disable caching
+	 * @param ttlSeconds How long search response pages from this client are fresh for
 	 */
-	protected boolean hasNextResultsPage() {
-		return nextPageUrl != null;
+	public void setResponseCache(SearchResponseCache responseCache, long ttlSeconds) {
+		this.responseCacheTtlMillis = ttlSeconds * 1000;
+		this.responseCache = responseCache;
+	}
+
+	/**
+	 * Set the registry receiving the latency, size, page, result and rate limit measurements of
+	 * every REST call made by this client. Synchronous calls split the latency into the time until
+	 * the response headers arrive, the time waiting for the body while it is parsed and the parse time.
+	 * The time to connect is included in the time until the response headers arrive.
+	 * @param metrics The registry, which may be shared with other clients, or null to not measure
+	 */
+	public void setMetricsRegistry(MetricsRegistry metrics) {
+		this.metrics = metrics == null ? MetricsRegistry.NOOP : metrics;
+	}
+
+	/**
+	 * Set the tracer recording a span for every search page request made by this client.
+	 * Page spans are nested in the span current on the calling thread, and wrap a span
+	 * for any wait for the search rate limit.
+	 * @param tracer The tracer, which may be shared with other clients, or null to not trace
+	 */
+	public void setTracer(Tracer tracer) {
+		this.tracer = tracer == null ? Tracer.NOOP : tracer;
+	}
+
+	/**
+	 * Set when failed or slow GET requests are sent again. Retries back off and wait at least as long as
+	 * a Retry-After response header asks. Retried and hedged searches take from the search rate limit
+	 * budget as the servers count them, and a search is only hedged if the budget allows it straight away.
+	 * @param retryPolicy The policy, which may be shared with other clients, or null to never retry
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy == null ? RetryPolicy.NONE : retryPolicy;
+	}
+
+	/**
+	 * Set whether requests to a REST API endpoint are stopped while it is failing.
+	 * Each endpoint, such as the search or the OAuth2 token endpoint, has its own circuit breaker.
+	 * While a breaker is open, requests fail fast with a CircuitOpenException, except that searches
+	 * answered by a stale cached response page use the cached page.
+	 * @param circuitBreaking True to use circuit breakers
+	 */
+	public void setCircuitBreaking(boolean circuitBreaking) {
+		this.circuitBreaking = circuitBreaking;
+	}
+
+	/**
+	 * Get the circuit breaker of a REST API endpoint. By default a breaker is shared by all
+	 * clients using the endpoint.
+	 * @param endpoint The host and path of the endpoint
+	 * @return The circuit breaker
+	 */
+	protected CircuitBreaker getCircuitBreaker(String endpoint) {
+		return CircuitBreaker.forApi(endpoint);
 	}
 
 	/**
@@ -256,12 +939,31 @@ public abstract class AbstractRESTClient {
 		this.baseApiUrl = baseApiUrl;
 	}
 
+	/**
+	 * Get the governor of the search rate limit budget. By default the budget is shared
+	 * by all instances of the client class.
+	 * @return The search rate limit governor
+	 */
+	protected RateLimitGovernor getRateLimitGovernor() {
+		return RateLimitGovernor.forApi(getClass().getName());
+	}
+
+	/**
+	 * Set whether searches are paced evenly over the rate limit window rather than
+	 * issued as fast as possible until the limit is reached.
+	 * Pacing applies to every client sharing the rate limit governor.
+	 * @param pacing True to pace searches
+	 */
+	public void setRateLimitPacing(boolean pacing) {
+		getRateLimitGovernor().setPacing(pacing);
+	}
+
 	/**
 	 * How many REST API searches can be issued before reaching the server limit. 
 	 * @return The number of REST API searches that can be issued before reaching the server limit. 
 	 */
 	public long getRemainingSearchRequests() {
-		return this.remainingSearchRequests;
+		return getRateLimitGovernor().getRemaining();
 	}
 	
 	/**
@@ -269,39 +971,44 @@ public abstract class AbstractRESTClient {
 	 * @return The number of seconds until the REST API search limit resets to the maximum. 
 	 */
 	public long getRemainingSearchResetSeconds() {
-		return searchResetTime - System.currentTimeMillis()/1000;
+		return getRateLimitGovernor().getResetTime() - System.currentTimeMillis()/1000;
 	}
 	
 	/**
-	 * Check the search rate limits and sleep for the required amount of time
-	 * if no queries can be issued.
+	 * Record the REST API search rate limits in the shared budget
+	 * @param remainingSearchRequests The number of searches that can be issued before the reset time
+	 * @param searchResetTime The time the limit resets in seconds since the epoch
+	 */
+	protected void updateSearchRateLimits(long remainingSearchRequests, long searchResetTime) {
+		getRateLimitGovernor().update(remainingSearchRequests, searchResetTime);
+	}
+	
+	/**
+	 * Take a search request from the shared rate limit budget without blocking the calling thread.
+	 * @return A future completed when a search can be issued
+	 */
+	CompletableFuture<Void> checkSearchRateLimitsAsync() {
+		return getRateLimitGovernor().acquire();
+	}
+	
+	/**
+	 * Take a search request from the shared rate limit budget, waiting until
+	 * the limit resets if no queries can be issued.
 	 * @throws IOException 
 	 */
 	void checkSearchRateLimits() throws IOException {
-		if (searchResetTime == null) {
-			return; // Haven't made any API calls yet.
-		}
-		
-		if (remainingSearchRequests > 0) {
-			return;
-		}
-		
-		if (getRemainingSearchResetSeconds() <= 0) {
+		RateLimitGovernor governor = getRateLimitGovernor();
+		if (governor.isExhausted() && getRemainingSearchResetSeconds() <= 0) {
 			querySearchRateLimits();
-			if (remainingSearchRequests > 0) {
-				return;
-			}
 		}
 		
 		try {
-			// TODO: Should be using threads
-			// and println from main() only.
-			System.out.println(
-					"Search rate limit hit in " + this.getClass().getSimpleName() +
-					". Waiting for " + getRemainingSearchResetSeconds() + " seconds.");
-			Thread.sleep(1000 * getRemainingSearchResetSeconds());
+			governor.acquire().get();
 		} catch (InterruptedException e) {
-			// Ok, keep going.
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for the " + governor.getApi() + " search rate limit");
+		} catch (ExecutionException e) {
+			throw new SearchException(e.getCause());
 		}
 	}
 
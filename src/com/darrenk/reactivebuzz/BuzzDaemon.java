@@ -0,0 +1,173 @@
+package com.darrenk.reactivebuzz;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps searching for GitHub projects and their Tweets, publishing new Tweets to a sink.
+ * GitHub projects and the Tweets of the projects found are refreshed on independent intervals,
+ * reusing the clients, their tokens and caches and the search watermarks between refreshes.
+ * Refreshes run one at a time on a single scheduler thread, which keeps the JVM running
+ * until the daemon is closed.
+ */
+public class BuzzDaemon implements Closeable {
+	private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+	private final ConcurrentSearch concurrentSearch;
+	private final ResultSink sink;
+	private final String githubQuery;
+	private final int maxProjects;
+	private final int maxTweetsPerProject;
+	private final ScheduledExecutorService scheduler;
+	// Only used by the scheduler thread. The tracked projects by name, the most recently found last.
+	private final LinkedHashMap<String, TrackedProject> projects = new LinkedHashMap<String, TrackedProject>();
+
+	/**
+	 * Constructor. Searches are made incremental so each refresh only requests new results.
+	 * @param concurrentSearch The search to run
+	 * @param sink Receives the new Tweets found for each project
+	 * @param githubQuery The GitHub repository query
+	 * @param maxProjects The maximum number of projects with Tweets to track
+	 * @param maxTweetsPerProject Twitter result pages are requested until this many Tweets are found
+	 */
+	public BuzzDaemon(ConcurrentSearch concurrentSearch, ResultSink sink, String githubQuery,
+			int maxProjects, int maxTweetsPerProject) {
+		this.concurrentSearch = concurrentSearch;
+		this.sink = sink;
+		this.githubQuery = githubQuery;
+		this.maxProjects = maxProjects;
+		this.maxTweetsPerProject = maxTweetsPerProject;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "ReactiveBuzz-daemon"));
+		concurrentSearch.setIncremental(true);
+	}
+
+	/**
+	 * Start refreshing. The GitHub projects are refreshed immediately.
+	 * @param projectInterval The time between the end of one GitHub project refresh and the start of the next
+	 * @param tweetInterval The time between the end of one Tweet refresh and the start of the next
+	 */
+	public void start(Duration projectInterval, Duration tweetInterval) {
+		scheduler.scheduleWithFixedDelay(() -> run(this::refreshProjects),
+				0, projectInterval.toMillis(), TimeUnit.MILLISECONDS);
+		scheduler.scheduleWithFixedDelay(() -> run(this::refreshTweets),
+				tweetInterval.toMillis(), tweetInterval.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stop refreshing. A refresh in progress is interrupted and briefly waited for.
+	 */
+	@Override
+	public void close() {
+		scheduler.shutdownNow();
+		try {
+			scheduler.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Search GitHub for projects pushed since the last refresh, search Twitter for them
+	 * and publish the Tweets found
+	 * @throws IOException
+	 */
+	void refreshProjects() throws IOException {
+		Map<SearchResult, SearchResults> results = concurrentSearch.search(githubQuery, maxProjects, maxTweetsPerProject);
+		for (SearchResult project: results.keySet()) {
+			// Move the project to the most recently found end
+			TrackedProject tracked = projects.remove(project.getName());
+			projects.put(project.getName(), tracked == null ? new TrackedProject(project) : tracked);
+		}
+		Iterator<String> oldest = projects.keySet().iterator();
+		while (projects.size() > maxProjects) {
+			oldest.next();
+			oldest.remove();
+		}
+		publish(results);
+	}
+
+	/**
+	 * Search Twitter for new Tweets for the tracked projects and publish them
+	 * @throws IOException
+	 */
+	void refreshTweets() throws IOException {
+		if (!projects.isEmpty()) {
+			publish(concurrentSearch.searchTweets(getProjects(), maxTweetsPerProject));
+		}
+	}
+
+	/**
+	 * @return The projects being tracked, the most recently found last
+	 */
+	List<SearchResult> getProjects() {
+		List<SearchResult> tracked = new ArrayList<SearchResult>(projects.size());
+		for (TrackedProject project: projects.values()) {
+			tracked.add(project.project);
+		}
+		return tracked;
+	}
+
+	/* Publish the Tweets of tracked projects newer than the newest published before.
+	 * Tweet ids increase with time, so only the highest published id needs to be kept.
+	 */
+	private void publish(Map<SearchResult, SearchResults> results) throws IOException {
+		for (Entry<SearchResult, SearchResults> result: results.entrySet()) {
+			TrackedProject tracked = projects.get(result.getKey().getName());
+			if (tracked == null) {
+				continue;
+			}
+			List<SearchResult> tweets = new ArrayList<SearchResult>();
+			long maxPublishedId = tracked.maxPublishedId;
+			for (SearchResult tweet: result.getValue().getResults()) {
+				long id = Long.parseLong(tweet.getName());
+				if (id > tracked.maxPublishedId) {
+					tweets.add(tweet);
+					maxPublishedId = Math.max(maxPublishedId, id);
+				}
+			}
+			tracked.maxPublishedId = maxPublishedId;
+			if (!tweets.isEmpty()) {
+				sink.publish(result.getKey(), tweets);
+			}
+		}
+	}
+
+	/* Run a refresh, reporting failures so that later refreshes still run
+	 */
+	private static void run(Refresh refresh) {
+		try {
+			refresh.run();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * A project being tracked and the id of the newest Tweet published for it
+	 */
+	private static final class TrackedProject {
+		private final SearchResult project;
+		private long maxPublishedId;
+
+		TrackedProject(SearchResult project) {
+			this.project = project;
+		}
+	}
+
+	/**
+	 * A refresh task that can fail
+	 */
+	private interface Refresh {
+		void run() throws IOException;
+	}
+}
@@ -0,0 +1,196 @@
+package com.darrenk.reactivebuzz;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Stops requests to a failing REST API endpoint so that callers fail fast instead of each waiting
+ * out its own timeouts. The outcomes of the most recent calls are kept; once enough calls have been
+ * made and the share that failed reaches the threshold the breaker opens and rejects calls.
+ * After the open duration a limited number of trial calls are let through. If they all succeed the
+ * breaker closes, and if any fails it opens again.
+ * A call fails when the request cannot be sent or the server responds with an error, after any retries.
+ * A 429 Too Many Requests response is not a failure, as rate limiting is handled by the RateLimitGovernor.
+ */
+public class CircuitBreaker {
+	public static final int DEFAULT_WINDOW_SIZE = 20;
+	public static final int DEFAULT_MIN_CALLS = 10;
+	public static final double DEFAULT_FAILURE_RATE = 0.5;
+	public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+	public static final int DEFAULT_TRIAL_CALLS = 1;
+
+	/**
+	 * The states of a breaker
+	 */
+	public enum State {
+		/** Calls are made and their outcomes recorded */
+		CLOSED,
+		/** Calls are rejected */
+		OPEN,
+		/** Trial calls are made to decide whether to close */
+		HALF_OPEN
+	}
+
+	private static final ConcurrentMap<String, CircuitBreaker> breakers =
+			new ConcurrentHashMap<String, CircuitBreaker>();
+
+	private final String api;
+	private final int minCalls;
+	private final double failureRate;
+	private final long openMillis;
+	private final int trialCalls;
+	// Guarded by this. A ring of the most recent call outcomes, true for a failure.
+	private final boolean[] outcomes;
+	private int calls;
+	private int failures;
+	private int next;
+	private State state = State.CLOSED;
+	private long openUntilMillis;
+	private int trials;
+	private int trialSuccesses;
+
+	/**
+	 * Get the breaker shared by all users of a REST API endpoint, created with the default settings
+	 * @param api Name of the REST API endpoint
+	 * @return The breaker for the endpoint
+	 */
+	public static CircuitBreaker forApi(String api) {
+		return breakers.computeIfAbsent(api, CircuitBreaker::new);
+	}
+
+	/**
+	 * Constructor for a breaker with the default settings that is not shared through forApi()
+	 * @param api Name of the REST API endpoint
+	 */
+	public CircuitBreaker(String api) {
+		this(api, DEFAULT_WINDOW_SIZE, DEFAULT_MIN_CALLS, DEFAULT_FAILURE_RATE, DEFAULT_OPEN_DURATION, DEFAULT_TRIAL_CALLS);
+	}
+
+	/**
+	 * Constructor for a breaker that is not shared through forApi()
+	 * @param api Name of the REST API endpoint
+	 * @param windowSize The number of recent calls whose outcomes are kept
+	 * @param minCalls The number of calls kept before the breaker can open
+	 * @param failureRate The share of the kept calls that must fail to open the breaker, from 0 to 1
+	 * @param openDuration How long calls are rejected before trial calls are made
+	 * @param trialCalls The number of trial calls that must succeed to close the breaker
+	 */
+	public CircuitBreaker(String api, int windowSize, int minCalls, double failureRate,
+			Duration openDuration, int trialCalls) {
+		this.api = api;
+		this.outcomes = new boolean[windowSize];
+		this.minCalls = Math.min(minCalls, windowSize);
+		this.failureRate = failureRate;
+		this.openMillis = openDuration.toMillis();
+		this.trialCalls = trialCalls;
+	}
+
+	/**
+	 * Ask to make a call. Each permitted call must be followed by {@link #onSuccess()} or {@link #onFailure()}.
+	 * @return True if the call can be made, false if it is rejected
+	 */
+	public synchronized boolean tryAcquire() {
+		if (state == State.OPEN && System.currentTimeMillis() >= openUntilMillis) {
+			state = State.HALF_OPEN;
+			trials = 0;
+			trialSuccesses = 0;
+		}
+		switch (state) {
+		case CLOSED:
+			return true;
+		case HALF_OPEN:
+			if (trials < trialCalls) {
+				trials++;
+				return true;
+			}
+			return false;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Record a permitted call that succeeded
+	 */
+	public synchronized void onSuccess() {
+		if (state == State.HALF_OPEN) {
+			if (++trialSuccesses >= trialCalls) {
+				close();
+			}
+		} else if (state == State.CLOSED) {
+			record(false);
+		}
+	}
+
+	/**
+	 * Record a permitted call that failed
+	 */
+	public synchronized void onFailure() {
+		if (state == State.HALF_OPEN) {
+			open();
+		} else if (state == State.CLOSED) {
+			record(true);
+		}
+	}
+
+	/**
+	 * @return The state of the breaker. An open breaker whose open duration has passed is still
+	 * reported as open until a call is asked for.
+	 */
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * @return True if calls would be rejected now
+	 */
+	public synchronized boolean isOpen() {
+		return state == State.OPEN ? System.currentTimeMillis() < openUntilMillis :
+			state == State.HALF_OPEN && trials >= trialCalls;
+	}
+
+	/**
+	 * @return The name of the REST API endpoint
+	 */
+	public String getApi() {
+		return api;
+	}
+
+	/* Add a call outcome to the ring, replacing the oldest once it is full,
+	 * and open if enough of the calls failed. Must hold the lock.
+	 */
+	private void record(boolean failure) {
+		if (calls == outcomes.length) {
+			if (outcomes[next]) {
+				failures--;
+			}
+		} else {
+			calls++;
+		}
+		outcomes[next] = failure;
+		if (failure) {
+			failures++;
+		}
+		next = (next + 1) % outcomes.length;
+		if (calls >= minCalls && failures > 0 && failures >= failureRate * calls) {
+			open();
+		}
+	}
+
+	/* Reject calls for the open duration. Must hold the lock.
+	 */
+	private void open() {
+		state = State.OPEN;
+		openUntilMillis = System.currentTimeMillis() + openMillis;
+	}
+
+	/* Forget the recorded outcomes and let calls through. Must hold the lock.
+	 */
+	private void close() {
+		state = State.CLOSED;
+		calls = 0;
+		failures = 0;
+		next = 0;
+	}
+}
@@ -0,0 +1,535 @@
+package com.darrenk.reactivebuzz;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.darrenk.reactivebuzz.exception.SearchException;
+import com.darrenk.reactivebuzz.github.GitHubRESTClient;
+import com.darrenk.reactivebuzz.github.Repository;
+import com.darrenk.reactivebuzz.store.ResultStore;
+import com.darrenk.reactivebuzz.trace.Span;
+import com.darrenk.reactivebuzz.trace.Tracer;
+import com.darrenk.reactivebuzz.twitter.Tweet;
+import com.darrenk.reactivebuzz.twitter.TwitterRESTClient;
+
+/**
+ * Searches GitHub for projects and fans the per-project Twitter searches out
+ * to a bounded executor, collecting the results as they complete.
+ * The GitHub result pages are walked on the calling thread.
+ * Twitter searches can be batched so that one search covers several projects.
+ */
+public class ConcurrentSearch implements Closeable {
+	private final GitHubRESTClient githubClient;
+	private final TwitterRESTClient twitterClient;
+	private final int parallelism;
+	private final ExecutorService executor;
+	private volatile ResultStore resultStore;
+	private volatile boolean incremental;
+	private volatile int prefetchThreshold;
+	private volatile int batchQueryLength;
+	private volatile boolean partialResults;
+	private volatile Tracer tracer = Tracer.NOOP;
+
+	/**
+	 * Constructor
+	 * @param githubClient Client used to walk the GitHub search results
+	 * @param twitterClient Client shared by all of the concurrent Twitter searches
+	 * @param parallelism The maximum number of Twitter searches in flight
+	 */
+	public ConcurrentSearch(GitHubRESTClient githubClient, TwitterRESTClient twitterClient, int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+		}
+		this.githubClient = githubClient;
+		this.twitterClient = twitterClient;
+		this.parallelism = parallelism;
+		this.executor = createExecutor(parallelism);
+	}
+
+	/**
+	 * Set the store that keeps results between runs. The projects found are stored under
+	 * the GitHub query and their Tweets under the project name. Tweets stored by earlier
+	 * searches are returned along with the Tweets found.
+	 * @param resultStore The result store or null to not keep results
+	 */
+	public void setResultStore(ResultStore resultStore) {
+		this.resultStore = resultStore;
+	}
+
+	/**
+	 * Set whether only new results are requested once results have been found.
+	 * New GitHub projects are those pushed since the latest push seen for the GitHub query,
+	 * and are searched before the projects already known.
+	 * New Tweets are those posted since the highest Tweet id seen for the project's query.
+	 * Results seen by an earlier search, or for the first search those in the result store, are known.
+	 * @param incremental True to request only new results
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	/**
+	 * Set when the next GitHub result page is requested in the background while
+	 * the projects found so far are being searched.
+	 * @param prefetchThreshold The next page is requested once this many or fewer projects are left
+	 * to search, or 0 to only request pages when they are needed
+	 * @see SearchResults#setPrefetchThreshold(int)
+	 */
+	public void setPrefetchThreshold(int prefetchThreshold) {
+		this.prefetchThreshold = prefetchThreshold;
+	}
+
+	/**
+	 * Set whether the Twitter searches for several projects are combined into one search
+	 * with OR, using up to a query length. The Tweets found are matched back to the projects
+	 * whose query terms they contain as words, or failing that whose repository name they contain.
+	 * Tweets that only match a project through a link are not matched to any project.
+	 * @param batchQueryLength The maximum combined query length, such as
+	 * {@link TwitterRESTClient#MAX_QUERY_LENGTH}, or 0 to search for each project separately
+	 */
+	public void setBatchQueryLength(int batchQueryLength) {
+		this.batchQueryLength = batchQueryLength;
+	}
+
+	/**
+	 * Set whether GitHub and Twitter result pages that cannot be retrieved are skipped instead of
+	 * failing the search. The projects and Tweets found on the other pages are still returned.
+	 * @param partialResults True to skip failed pages
+	 * @see SearchResults#setPartialResults(boolean)
+	 */
+	public void setPartialResults(boolean partialResults) {
+		this.partialResults = partialResults;
+	}
+
+	/**
+	 * Set the tracer recording a span for each search and for the Twitter search of each batch of projects.
+	 * The Twitter searches are nested in the search that found the projects although they run on executor threads.
+	 * They are not nested in the GitHub result page that found their projects, as a page's span ends before its
+	 * projects are searched. Set the same tracer on the clients to nest their result page requests.
+	 * @param tracer The tracer or null to not trace
+	 */
+	public void setTracer(Tracer tracer) {
+		this.tracer = tracer == null ? Tracer.NOOP : tracer;
+	}
+
+	/**
+	 * Search GitHub and then search Twitter for each GitHub project found.
+	 * No more than maxProjects searches are in flight beyond the projects already
+	 * collected, so the maxProjects cut-off is never overshot.
+	 * @param githubQuery The GitHub repository query
+	 * @param maxProjects The maximum number of projects with Tweets to return
+	 * @param maxTweetsPerProject Twitter result pages are requested until this many Tweets are found
+	 * @return Map of GitHub projects to the Tweets found for them
+	 * @throws IOException
+	 */
+	public Map<SearchResult, SearchResults> search(String githubQuery, int maxProjects,
+			int maxTweetsPerProject) throws IOException {
+		try (Span run = tracer.start("search", "run")) {
+			run.tag("query", githubQuery);
+			Map<SearchResult, SearchResults> mapResults = new HashMap<SearchResult, SearchResults>();
+			CompletionService<List<Entry<SearchResult, SearchResults>>> completion =
+					new ExecutorCompletionService<List<Entry<SearchResult, SearchResults>>>(executor);
+			List<Future<List<Entry<SearchResult, SearchResults>>>> submitted =
+					new ArrayList<Future<List<Entry<SearchResult, SearchResults>>>>();
+			ProjectBatches githubResults = new ProjectBatches(searchProjects(githubQuery).iterator());
+			int inFlight = 0;
+			try {
+				while (mapResults.size() < maxProjects) {
+					int window = Math.min(parallelism, maxProjects - mapResults.size());
+					// The iterator requests new GitHub result pages as long as they exist
+					while (inFlight < window && githubResults.hasNext()) {
+						submitted.add(completion.submit(new ProjectSearch(githubResults.next(), maxTweetsPerProject)));
+						inFlight++;
+					}
+					if (inFlight == 0) {
+						break;
+					}
+
+					List<Entry<SearchResult, SearchResults>> results = take(completion);
+					inFlight--;
+					for (Entry<SearchResult, SearchResults> result: results) {
+						// A batch can find Tweets for more projects than are wanted
+						if (result.getValue().size() > 0 && mapResults.size() < maxProjects) {
+							mapResults.put(result.getKey(), result.getValue());
+							ResultStore store = resultStore;
+							if (store != null) {
+								store.put(githubQuery, result.getKey());
+							}
+						}
+					}
+				}
+			} finally {
+				for (Future<List<Entry<SearchResult, SearchResults>>> future: submitted) {
+					future.cancel(true);
+				}
+			}
+
+			run.tag("projects", mapResults.size());
+			return mapResults;
+		}
+	}
+
+	/**
+	 * Search Twitter for each of a set of GitHub projects without searching GitHub.
+	 * @param projects The GitHub projects
+	 * @param maxTweetsPerProject Twitter result pages are requested until this many Tweets are found
+	 * @return Map of the GitHub projects with Tweets to the Tweets found for them
+	 * @throws IOException
+	 */
+	public Map<SearchResult, SearchResults> searchTweets(Collection<SearchResult> projects,
+			int maxTweetsPerProject) throws IOException {
+		Map<SearchResult, SearchResults> mapResults = new HashMap<SearchResult, SearchResults>();
+		CompletionService<List<Entry<SearchResult, SearchResults>>> completion =
+				new ExecutorCompletionService<List<Entry<SearchResult, SearchResults>>>(executor);
+		List<Future<List<Entry<SearchResult, SearchResults>>>> submitted =
+				new ArrayList<Future<List<Entry<SearchResult, SearchResults>>>>();
+		ProjectBatches projectBatches = new ProjectBatches(projects.iterator());
+		int inFlight = 0;
+		try (Span run = tracer.start("search tweets", "run")) {
+			run.tag("projects", projects.size());
+			while (inFlight > 0 || projectBatches.hasNext()) {
+				while (inFlight < parallelism && projectBatches.hasNext()) {
+					submitted.add(completion.submit(new ProjectSearch(projectBatches.next(), maxTweetsPerProject)));
+					inFlight++;
+				}
+				for (Entry<SearchResult, SearchResults> result: take(completion)) {
+					if (result.getValue().size() > 0) {
+						mapResults.put(result.getKey(), result.getValue());
+					}
+				}
+				inFlight--;
+			}
+		} finally {
+			for (Future<List<Entry<SearchResult, SearchResults>>> future: submitted) {
+				future.cancel(true);
+			}
+		}
+
+		return mapResults;
+	}
+
+	/* Search GitHub for projects. When searching incrementally the projects found are
+	 * the projects pushed since the last search followed by the known projects.
+	 */
+	private SearchResults searchProjects(String githubQuery) throws IOException {
+		ResultStore store = resultStore;
+		List<SearchResult> stored = store == null ?
+				Collections.<SearchResult>emptyList() : store.getGroup(githubQuery);
+		if (!incremental || (githubClient.getPushedSince(githubQuery) == null && stored.isEmpty())) {
+			SearchResults projects = githubClient.searchRepositories(githubQuery);
+			if (incremental) {
+				// Results are sorted by push time so the first page has the latest push
+				for (SearchResult project: projects.getResults()) {
+					String pushedAt = ((Repository) project).getPushedAt();
+					if (pushedAt != null) {
+						githubClient.setPushedSince(githubQuery, pushedAt);
+					}
+				}
+			}
+			// The projects are only iterated once
+			projects.setRetainedPages(1);
+			projects.setPrefetchThreshold(prefetchThreshold);
+			projects.setPartialResults(partialResults);
+			return projects;
+		}
+		for (SearchResult project: stored) {
+			String pushedAt = ((Repository) project).getPushedAt();
+			if (pushedAt != null) {
+				githubClient.setPushedSince(githubQuery, pushedAt);
+			}
+		}
+		SearchResults projects = new SearchResults(githubClient, new ArrayList<SearchResult>(), null);
+		githubClient.pollNewRepositories(githubQuery, projects);
+		projects.merge(stored);
+		return projects;
+	}
+
+	/**
+	 * Stop the executor threads
+	 */
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	/* Wait for the next completed project search and unwrap any failure
+	 */
+	private static List<Entry<SearchResult, SearchResults>> take(
+			CompletionService<List<Entry<SearchResult, SearchResults>>> completion) throws IOException {
+		try {
+			return completion.take().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for Twitter search results");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new SearchException("Twitter search failed", cause);
+		}
+	}
+
+	/**
+	 * Searches Twitter for a batch of GitHub projects with one query
+	 */
+	private final class ProjectSearch implements Callable<List<Entry<SearchResult, SearchResults>>> {
+		private final List<SearchResult> projects;
+		private final int maxTweets;
+		// The span of the search submitting this one from another thread
+		private final Span parent;
+
+		public ProjectSearch(List<SearchResult> projects, int maxTweets) {
+			this.projects = projects;
+			this.maxTweets = maxTweets;
+			this.parent = tracer.current();
+		}
+
+		@Override
+		public List<Entry<SearchResult, SearchResults>> call() throws Exception {
+			try (Span span = tracer.start("project", "project", parent)) {
+				StringBuilder names = new StringBuilder();
+				for (SearchResult project: projects) {
+					names.append(names.length() > 0 ? " " : "").append(project.getName());
+				}
+				span.tag("projects", names);
+				List<Entry<SearchResult, SearchResults>> results = searchTwitter();
+				int tweets = 0;
+				for (Entry<SearchResult, SearchResults> result: results) {
+					tweets += result.getValue().size();
+				}
+				span.tag("tweets", tweets);
+				return results;
+			}
+		}
+
+		/* Search Twitter for the batch of projects and match the Tweets found back to each project
+		 */
+		private List<Entry<SearchResult, SearchResults>> searchTwitter() throws IOException {
+			ResultStore store = resultStore;
+			List<String> queries = new ArrayList<String>(projects.size());
+			List<List<SearchResult>> stored = new ArrayList<List<SearchResult>>(projects.size());
+			long[] sinceIds = new long[projects.size()];
+			boolean poll = incremental;
+			for (int i = 0; i < projects.size(); i++) {
+				String query = getProjectQuery(projects.get(i));
+				List<SearchResult> storedTweets = store == null ?
+						Collections.<SearchResult>emptyList() : store.getGroup(projects.get(i).getName());
+				if (poll) {
+					for (SearchResult tweet: storedTweets) {
+						twitterClient.setSinceId(query, Long.parseLong(tweet.getName()));
+					}
+					Long sinceId = twitterClient.getSinceId(query);
+					poll = sinceId != null;
+					sinceIds[i] = poll ? sinceId : 0;
+				}
+				queries.add(query);
+				stored.add(storedTweets);
+			}
+
+			String query = TwitterRESTClient.orQuery(queries);
+			SearchResults twitterResults;
+			if (poll) {
+				// Poll from the project that has seen the fewest Tweets
+				long sinceId = Long.MAX_VALUE;
+				for (long projectSinceId: sinceIds) {
+					sinceId = Math.min(sinceId, projectSinceId);
+				}
+				twitterResults = new SearchResults(twitterClient, new ArrayList<SearchResult>(), null);
+				twitterClient.pollNewTweets(query, sinceId, twitterResults);
+			} else {
+				twitterResults = twitterClient.searchTweets(query);
+				twitterResults.setPartialResults(partialResults);
+				// If we don't have enough results then get the next Twitter search result pages
+				twitterResults.retrieve(maxTweets * projects.size() - 1);
+			}
+
+			List<List<SearchResult>> projectTweets = projects.size() == 1 ?
+					Collections.singletonList(twitterResults.getResults()) :
+					demultiplex(projects, twitterResults.getResults());
+			Long batchSinceId = twitterClient.getSinceId(query);
+			List<Entry<SearchResult, SearchResults>> results =
+					new ArrayList<Entry<SearchResult, SearchResults>>(projects.size());
+			for (int i = 0; i < projects.size(); i++) {
+				SearchResults projectResults;
+				if (projects.size() == 1) {
+					projectResults = twitterResults;
+				} else {
+					List<SearchResult> tweets = new ArrayList<SearchResult>();
+					for (SearchResult tweet: projectTweets.get(i)) {
+						// A batch poll can return Tweets the project has already seen
+						if (!poll || Long.parseLong(tweet.getName()) > sinceIds[i]) {
+							tweets.add(tweet);
+						}
+					}
+					projectResults = new SearchResults(twitterClient, tweets, null);
+					if (batchSinceId != null) {
+						twitterClient.setSinceId(queries.get(i), batchSinceId);
+					}
+				}
+				if (store != null) {
+					store.putAll(projects.get(i).getName(), projectResults.getResults());
+					projectResults.merge(stored.get(i));
+				}
+				results.add(new SimpleImmutableEntry<SearchResult, SearchResults>(projects.get(i), projectResults));
+			}
+			return results;
+		}
+	}
+
+	/**
+	 * Groups GitHub projects into the batches searched by one Twitter query,
+	 * requesting projects from the underlying iterator as batches are needed
+	 */
+	private final class ProjectBatches {
+		private final Iterator<SearchResult> projects;
+		// A project that did not fit in the previous batch
+		private SearchResult pending;
+
+		ProjectBatches(Iterator<SearchResult> projects) {
+			this.projects = projects;
+		}
+
+		boolean hasNext() {
+			return pending != null || projects.hasNext();
+		}
+
+		List<SearchResult> next() {
+			int maxLength = batchQueryLength;
+			List<SearchResult> batch = new ArrayList<SearchResult>();
+			List<String> queries = new ArrayList<String>();
+			while (hasNext()) {
+				SearchResult project = pending == null ? projects.next() : pending;
+				pending = null;
+				queries.add(getProjectQuery(project));
+				if (!batch.isEmpty() && TwitterRESTClient.orQuery(queries).length() > maxLength) {
+					pending = project;
+					break;
+				}
+				batch.add(project);
+				if (maxLength <= 0) {
+					break;
+				}
+			}
+			return batch;
+		}
+	}
+
+	/* The Twitter query for a GitHub project
+	 */
+	private static String getProjectQuery(SearchResult project) {
+		return "github " + project.getName().replace('/', ' ');
+	}
+
+	/**
+	 * Match the Tweets found by a batched search to the projects they were found for.
+	 * A Tweet matches the projects whose owner and repository name it contains. A Tweet that
+	 * matches none of them matches the projects whose repository name it contains.
+	 * Names only match whole words of the Tweet text, where a word can contain '-', '_' and '.',
+	 * so a Tweet about reactor-core does not match reactor. Tweets that match no project are dropped.
+	 * @param projects The GitHub projects searched for
+	 * @param tweets The Tweets found
+	 * @return The Tweets matching each project, in the order of the projects
+	 */
+	static List<List<SearchResult>> demultiplex(List<SearchResult> projects, List<SearchResult> tweets) {
+		List<List<SearchResult>> projectTweets = new ArrayList<List<SearchResult>>(projects.size());
+		List<String[]> terms = new ArrayList<String[]>(projects.size());
+		for (SearchResult project: projects) {
+			projectTweets.add(new ArrayList<SearchResult>());
+			terms.add(project.getName().toLowerCase(Locale.ROOT).split("/"));
+		}
+		for (SearchResult tweet: tweets) {
+			String text = ((Tweet) tweet).getText();
+			if (text == null) {
+				continue;
+			}
+			Set<String> words = getWords(text.toLowerCase(Locale.ROOT));
+			boolean matched = false;
+			for (int i = 0; i < projects.size(); i++) {
+				if (words.containsAll(Arrays.asList(terms.get(i)))) {
+					projectTweets.get(i).add(tweet);
+					matched = true;
+				}
+			}
+			for (int i = 0; !matched && i < projects.size(); i++) {
+				String[] projectTerms = terms.get(i);
+				if (words.contains(projectTerms[projectTerms.length - 1])) {
+					projectTweets.get(i).add(tweet);
+				}
+			}
+		}
+		return projectTweets;
+	}
+
+	/* Split text into the words a GitHub owner or repository name can match. Words are made of
+	 * letters, digits, '-', '_' and '.', without the '.' that ends a sentence.
+	 */
+	private static Set<String> getWords(String text) {
+		Set<String> words = new HashSet<String>();
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			char c = i < text.length() ? text.charAt(i) : ' ';
+			boolean wordChar = Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == '.';
+			if (wordChar && start < 0) {
+				start = i;
+			} else if (!wordChar && start >= 0) {
+				int end = i;
+				while (end > start && text.charAt(end - 1) == '.') {
+					end--;
+				}
+				if (end > start) {
+					words.add(text.substring(start, end));
+				}
+				start = -1;
+			}
+		}
+		return words;
+	}
+
+	/* Use a virtual thread per task when the JVM supports it, otherwise a fixed thread pool.
+	 * The number of tasks in flight is bounded by search() in either case.
+	 */
+	private static ExecutorService createExecutor(int parallelism) {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			// Virtual threads are not available
+		}
+		return Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "ReactiveBuzz-search-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+}
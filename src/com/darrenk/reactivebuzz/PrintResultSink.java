@@ -0,0 +1,45 @@
+package com.darrenk.reactivebuzz;
+
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Prints the Tweets found for GitHub projects
+ */
+public class PrintResultSink implements ResultSink {
+	private final PrintStream out;
+	private final int maxTweetsPerProject;
+	private final boolean outputTweetSummary;
+
+	/**
+	 * Constructor
+	 * @param out The stream to print to
+	 * @param maxTweetsPerProject The maximum number of Tweets printed for a project
+	 * @param outputTweetSummary True to print the Tweet id and text rather than the Tweet JSON
+	 */
+	public PrintResultSink(PrintStream out, int maxTweetsPerProject, boolean outputTweetSummary) {
+		this.out = out;
+		this.maxTweetsPerProject = maxTweetsPerProject;
+		this.outputTweetSummary = outputTweetSummary;
+	}
+
+	@Override
+	public synchronized void publish(SearchResult project, List<SearchResult> tweets) {
+		out.println("GitHub project:");
+		out.println(project.toString());
+		int nTweets = 0;
+		for (SearchResult tweet: tweets) {
+			out.println("----------------");
+			if (outputTweetSummary) {
+				out.println(tweet.getName() + ": " + tweet.getJSON().get("text"));
+			} else {
+				out.println(tweet.getJSONString());
+			}
+			nTweets++;
+			if (nTweets == maxTweetsPerProject) {
+				break;
+			}
+		}
+		out.println("==================");
+	}
+}
@@ -0,0 +1,201 @@
+package com.darrenk.reactivebuzz;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.simple.JSONObject;
+
+/**
+ * The state of a single REST API call: the request, the response headers,
+ * the parsed response body and the URL of the next result page.
+ * An exchange is used by one thread, which lets a single AbstractRESTClient
+ * serve many concurrent searches.
+ */
+public class RESTExchange {
+	private final String url;
+	private final String method;
+	private final Map<String, String> requestHeaders = new LinkedHashMap<String, String>();
+	private String body;
+	private int responseCode;
+	private final Map<String, List<String>> responseHeaders =
+			new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+	private JSONObject response;
+	private String nextPageUrl;
+	// Sending the request takes from the search rate limit budget
+	private boolean rateLimited;
+
+	/**
+	 * Constructor
+	 * @param url The HTTP endpoint
+	 * @param method The HTTP method
+	 */
+	public RESTExchange(String url, String method) {
+		this.url = url;
+		this.method = method;
+	}
+
+	/**
+	 * @return The HTTP endpoint
+	 */
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * @return The HTTP method
+	 */
+	public String getMethod() {
+		return method;
+	}
+
+	/**
+	 * Set a HTTP request header, replacing any existing value
+	 * @param name Header name
+	 * @param value Header value
+	 */
+	public void setRequestHeader(String name, String value) {
+		requestHeaders.put(name, value);
+	}
+
+	/**
+	 * @return The HTTP request headers in the order they were set
+	 */
+	public Map<String, String> getRequestHeaders() {
+		return Collections.unmodifiableMap(requestHeaders);
+	}
+
+	/**
+	 * @return The request body text or null if there is no body
+	 */
+	public String getBody() {
+		return body;
+	}
+
+	/**
+	 * Set the body text for the request
+	 * @param body The body text
+	 */
+	public void setBody(String body) {
+		this.body = body;
+	}
+
+	/**
+	 * @return The HTTP response code or 0 if there has been no response
+	 */
+	public int getResponseCode() {
+		return responseCode;
+	}
+
+	/**
+	 * @param responseCode The HTTP response code
+	 */
+	public void setResponseCode(int responseCode) {
+		this.responseCode = responseCode;
+	}
+
+	/**
+	 * Add the values of a HTTP response header
+	 * @param name Header name. Null names (the HTTP status line) are ignored.
+	 * @param values Header values
+	 */
+	public void addResponseHeader(String name, List<String> values) {
+		if (name != null) {
+			responseHeaders.put(name, values);
+		}
+	}
+
+	/**
+	 * Get the last value of a HTTP response header
+	 * @param name Case insensitive header name
+	 * @return The header value or null if the header was not returned
+	 */
+	public String getResponseHeader(String name) {
+		List<String> values = responseHeaders.get(name);
+		if (values == null || values.isEmpty()) {
+			return null;
+		}
+		return values.get(values.size() - 1);
+	}
+
+	/**
+	 * @return The HTTP response headers keyed by case insensitive name
+	 */
+	public Map<String, List<String>> getResponseHeaders() {
+		return Collections.unmodifiableMap(responseHeaders);
+	}
+
+	/**
+	 * @return True if every time the request is sent it takes from the search rate limit budget
+	 */
+	boolean isRateLimited() {
+		return rateLimited;
+	}
+
+	/**
+	 * Set whether every time the request is sent it takes from the search rate limit budget,
+	 * so that retries and hedged requests are counted as the server counts them
+	 * @param rateLimited True if the request is rate limited
+	 */
+	void setRateLimited(boolean rateLimited) {
+		this.rateLimited = rateLimited;
+	}
+
+	/**
+	 * Discard the response code and headers before the request is sent again
+	 */
+	void clearResponse() {
+		responseCode = 0;
+		responseHeaders.clear();
+	}
+
+	/**
+	 * @return A new exchange with the same request, so that the request can be sent twice at once
+	 */
+	RESTExchange copyRequest() {
+		RESTExchange copy = new RESTExchange(url, method);
+		copy.requestHeaders.putAll(requestHeaders);
+		copy.body = body;
+		return copy;
+	}
+
+	/**
+	 * Replace the response code and headers with those received by a copy of this exchange
+	 * @param copy The exchange that received the response
+	 */
+	void copyResponse(RESTExchange copy) {
+		clearResponse();
+		responseCode = copy.responseCode;
+		responseHeaders.putAll(copy.responseHeaders);
+	}
+
+	/**
+	 * @return The parsed JSON response body
+	 */
+	public JSONObject getResponse() {
+		return response;
+	}
+
+	/**
+	 * @param response The parsed JSON response body
+	 */
+	public void setResponse(JSONObject response) {
+		this.response = response;
+	}
+
+	/**
+	 * @return The HTTP API URL for the next query result page or null if this is the last page
+	 */
+	public String getNextPageUrl() {
+		return nextPageUrl;
+	}
+
+	/**
+	 * @param nextPageUrl The HTTP API URL for the next query result page
+	 */
+	public void setNextPageUrl(String nextPageUrl) {
+		this.nextPageUrl = nextPageUrl;
+	}
+}
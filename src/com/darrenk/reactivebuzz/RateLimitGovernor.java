@@ -0,0 +1,288 @@
+package com.darrenk.reactivebuzz;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares a REST API rate limit budget between all clients and threads using the API.
+ * The budget is a token bucket seeded from the rate limit response headers. When it is
+ * empty requests are queued and released when the limit resets, without blocking a thread.
+ * Optionally the budget is paced evenly over the rate limit window.
+ */
+public class RateLimitGovernor {
+	/**
+	 * How often queued requests are released one at a time once the limit should have reset
+	 * but no response has reported the new limit yet
+	 */
+	private static final long PROBE_INTERVAL_MILLIS = 1000;
+
+	private static final ConcurrentMap<String, RateLimitGovernor> governors =
+			new ConcurrentHashMap<String, RateLimitGovernor>();
+
+	private static final ScheduledExecutorService scheduler = createScheduler();
+
+	private final String api;
+	// Guarded by this
+	private boolean known;
+	private long remaining;
+	private long resetTime;
+	private final Deque<CompletableFuture<Void>> waiting = new ArrayDeque<CompletableFuture<Void>>();
+	private boolean releaseScheduled;
+	private long releaseAtMillis;
+	private long lastProbeMillis;
+	private boolean pacing;
+	private long nextPermitMillis;
+
+	/**
+	 * Get the governor shared by all users of a REST API rate limit
+	 * @param api Name of the rate limited REST API
+	 * @return The governor for the API
+	 */
+	public static RateLimitGovernor forApi(String api) {
+		return governors.computeIfAbsent(api, RateLimitGovernor::new);
+	}
+
+	/**
+	 * Constructor for a governor that is not shared through forApi()
+	 * @param api Name of the rate limited REST API
+	 */
+	public RateLimitGovernor(String api) {
+		this.api = api;
+	}
+
+	/**
+	 * Take a request from the budget.
+	 * Requests are not limited until the first rate limit update.
+	 * @return A future completed when the request can be issued
+	 */
+	public CompletableFuture<Void> acquire() {
+		synchronized (this) {
+			long now = System.currentTimeMillis();
+			if (!known) {
+				return CompletableFuture.completedFuture(null);
+			}
+			if (waiting.isEmpty() && canIssue(now)) {
+				issue(now);
+				return CompletableFuture.completedFuture(null);
+			}
+			CompletableFuture<Void> permit = new CompletableFuture<Void>();
+			waiting.add(permit);
+			scheduleRelease(now);
+			return permit;
+		}
+	}
+
+	/**
+	 * Take a request from the budget only if it can be issued now and no requests are waiting,
+	 * such as for a request that is optional.
+	 * Requests are not limited until the first rate limit update.
+	 * @return True if the request can be issued
+	 */
+	public synchronized boolean tryAcquire() {
+		long now = System.currentTimeMillis();
+		if (!known) {
+			return true;
+		}
+		if (waiting.isEmpty() && canIssue(now)) {
+			issue(now);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Set the budget from a REST API response and release queued requests it allows.
+	 * Within a rate limit window the reported budget does not count the requests still in flight,
+	 * so it can only lower the budget. A response from a later window replaces the budget, and a
+	 * response from an earlier window is ignored.
+	 * @param remaining The number of requests that can be issued before the reset time
+	 * @param resetTime The time the limit resets in seconds since the epoch
+	 */
+	public void update(long remaining, long resetTime) {
+		List<CompletableFuture<Void>> released;
+		synchronized (this) {
+			long now = System.currentTimeMillis();
+			if (known && resetTime < this.resetTime) {
+				return;
+			}
+			if (known && resetTime == this.resetTime && now < resetTime * 1000) {
+				this.remaining = Math.min(this.remaining, remaining);
+			} else {
+				this.remaining = remaining;
+			}
+			this.known = true;
+			this.resetTime = resetTime;
+			released = releaseAvailable(now);
+			scheduleRelease(now);
+		}
+		complete(released);
+	}
+
+	/**
+	 * Set whether requests are paced. When pacing, the remaining budget is spread evenly
+	 * over the time until the limit resets instead of being used as fast as requests arrive,
+	 * so requests are not stalled for a whole window once the budget runs out.
+	 * @param pacing True to pace requests
+	 */
+	public void setPacing(boolean pacing) {
+		List<CompletableFuture<Void>> released;
+		synchronized (this) {
+			long now = System.currentTimeMillis();
+			this.pacing = pacing;
+			this.nextPermitMillis = now;
+			released = releaseAvailable(now);
+			scheduleRelease(now);
+		}
+		complete(released);
+	}
+
+	/**
+	 * @return True if requests are paced
+	 */
+	public synchronized boolean isPacing() {
+		return pacing;
+	}
+
+	/**
+	 * @return The name of the rate limited REST API
+	 */
+	public String getApi() {
+		return api;
+	}
+
+	/**
+	 * @return The number of requests that can be issued before the limit resets
+	 */
+	public synchronized long getRemaining() {
+		return remaining;
+	}
+
+	/**
+	 * @return The time the limit resets in seconds since the epoch, or 0 if it is not known
+	 */
+	public synchronized long getResetTime() {
+		return resetTime;
+	}
+
+	/**
+	 * @return True if the budget is known to be used up
+	 */
+	public synchronized boolean isExhausted() {
+		return known && remaining <= 0;
+	}
+
+	/**
+	 * @return The number of requests waiting for budget
+	 */
+	public synchronized int getWaitingCount() {
+		return waiting.size();
+	}
+
+	/* True if a request can be issued now. Must hold the lock.
+	 */
+	private boolean canIssue(long now) {
+		return remaining > 0 && (!pacing || now >= nextPermitMillis);
+	}
+
+	/* Take a request from the budget and, when pacing, set the time of the next request. Must hold the lock.
+	 */
+	private void issue(long now) {
+		if (pacing) {
+			nextPermitMillis = now + Math.max(0, resetTime * 1000 - now) / remaining;
+		}
+		remaining--;
+	}
+
+	/* Called when queued requests may be released
+	 */
+	private void release() {
+		List<CompletableFuture<Void>> released;
+		synchronized (this) {
+			long now = System.currentTimeMillis();
+			releaseScheduled = false;
+			released = releaseAvailable(now);
+			if (released.isEmpty() && remaining <= 0 && now >= resetTime * 1000) {
+				// The limit should have reset but the new limit is not known until
+				// a response reports it, so release one request at a time until one does.
+				CompletableFuture<Void> probe = takeWaiting();
+				if (probe != null) {
+					released.add(probe);
+					lastProbeMillis = now;
+				}
+			}
+			scheduleRelease(now);
+		}
+		complete(released);
+	}
+
+	/* Remove the queued requests the budget allows. Must hold the lock.
+	 */
+	private List<CompletableFuture<Void>> releaseAvailable(long now) {
+		List<CompletableFuture<Void>> released = new ArrayList<CompletableFuture<Void>>();
+		while (canIssue(now)) {
+			CompletableFuture<Void> permit = takeWaiting();
+			if (permit == null) {
+				break;
+			}
+			issue(now);
+			released.add(permit);
+		}
+		return released;
+	}
+
+	/* Remove the next queued request or return null if there are none. Must hold the lock.
+	 */
+	private CompletableFuture<Void> takeWaiting() {
+		CompletableFuture<Void> permit = waiting.poll();
+		// Skip requests that were cancelled while waiting
+		while (permit != null && permit.isDone()) {
+			permit = waiting.poll();
+		}
+		return permit;
+	}
+
+	/* Schedule the release of queued requests for when the budget next allows one. Must hold the lock.
+	 */
+	private void scheduleRelease(long now) {
+		if (waiting.isEmpty()) {
+			return;
+		}
+		long at;
+		if (remaining > 0) {
+			at = pacing ? nextPermitMillis : now;
+		} else {
+			at = Math.max(resetTime * 1000, lastProbeMillis + PROBE_INTERVAL_MILLIS);
+		}
+		if (!releaseScheduled || at < releaseAtMillis) {
+			releaseScheduled = true;
+			releaseAtMillis = at;
+			scheduler.schedule(this::release, Math.max(0, at - now), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/* Complete released requests away from the scheduler thread and without holding the lock
+	 */
+	private static void complete(List<CompletableFuture<Void>> released) {
+		for (CompletableFuture<Void> permit: released) {
+			permit.completeAsync(() -> null);
+		}
+	}
+
+	private static ScheduledExecutorService createScheduler() {
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+			Thread thread = new Thread(r, "ReactiveBuzz-rate-limit");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.setRemoveOnCancelPolicy(true);
+		return executor;
+	}
+}
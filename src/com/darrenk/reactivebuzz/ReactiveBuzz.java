@@ -4,13 +4,19 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 
 import com.darrenk.reactivebuzz.exception.SearchException;
 import com.darrenk.reactivebuzz.github.GitHubRESTClient;
+import com.darrenk.reactivebuzz.metrics.InMemoryMetricsRegistry;
+import com.darrenk.reactivebuzz.store.ResultStore;
+import com.darrenk.reactivebuzz.trace.Tracer;
+import com.darrenk.reactivebuzz.transport.HttpClientTransport;
+import com.darrenk.reactivebuzz.transport.HttpTransport;
 import com.darrenk.reactivebuzz.twitter.TwitterRESTClient;
 
 /**
@@ -19,6 +25,13 @@ import com.darrenk.reactivebuzz.twitter.TwitterRESTClient;
 public final class ReactiveBuzz {
 	private static final int MAX_PROJECTS = 10;
 	private static final int MAX_TWEETS_PER_PROJECT = 20;
+	private static final int SEARCH_THREADS = 10;
+	private static final int PREFETCH_THRESHOLD = 10;
+	private static final int RESPONSE_CACHE_MB = 16;
+	private static final int GITHUB_CACHE_TTL_SECONDS = 300;
+	private static final int TWITTER_CACHE_TTL_SECONDS = 60;
+	private static final int PROJECT_REFRESH_SECONDS = 900;
+	private static final int TWEET_REFRESH_SECONDS = 60;
 	private static final String PROP_FILE = "config.properties";
 	private static final String GITHUB_QUERY = "reactive";
 	
@@ -30,6 +43,10 @@ public final class ReactiveBuzz {
 	private static String githubPwd;
 	
 	private static Properties properties = new Properties();
+	// Null unless REST call metrics are reported
+	private static InMemoryMetricsRegistry metrics;
+	// Records the search spans written to the trace file, if there is one
+	private static Tracer tracer = Tracer.NOOP;
 	
 	/**
 	 * Main entry point for the application
@@ -39,79 +56,160 @@ public final class ReactiveBuzz {
 	public static void main(String[] args) throws IOException {
 		String propFile = parseArgs(args);
 		getProperties(propFile);
-		int maxProjects = MAX_PROJECTS;
-		if (properties.containsKey("MaxProjects")) {
-			maxProjects = Integer.parseInt(properties.getProperty("MaxProjects"));
+		int maxProjects = getIntProperty("MaxProjects", MAX_PROJECTS);
+		int maxTweetsPerProject = getIntProperty("MaxTweetsPerProject", MAX_TWEETS_PER_PROJECT);
+		int searchThreads = getIntProperty("SearchThreads", SEARCH_THREADS);
+		if (Boolean.parseBoolean(properties.getProperty("Metrics", "false"))) {
+			metrics = new InMemoryMetricsRegistry();
 		}
-		int maxTweetsPerProject = MAX_TWEETS_PER_PROJECT;
-		if (properties.containsKey("MaxTweetsPerProject")) {
-			maxTweetsPerProject = Integer.parseInt(properties.getProperty("MaxTweetsPerProject"));
+		String traceFile = properties.getProperty("TraceFile");
+		if (traceFile != null && !traceFile.isEmpty()) {
+			tracer = new Tracer();
 		}
 
 		try {
-			Map<SearchResult, SearchResults> results = search(maxProjects, maxTweetsPerProject);
-			printResults(results, maxTweetsPerProject);
+			if (Boolean.parseBoolean(properties.getProperty("Daemon", "false"))) {
+				runDaemon(maxProjects, maxTweetsPerProject, searchThreads);
+			} else {
+				Map<SearchResult, SearchResults> results = search(maxProjects, maxTweetsPerProject, searchThreads);
+				printResults(results, maxTweetsPerProject);
+				reportMetrics();
+				writeTrace();
+			}
 		} catch (SearchException e) {
 			e.printStackTrace();
+			reportMetrics();
+			writeTrace();
+		}
+	}
+	
+	/* Print the REST call metrics if they are kept
+	 */
+	private static void reportMetrics() {
+		if (metrics != null) {
+			metrics.report(System.err);
+		}
+	}
+	
+	/* Write the recorded search spans to the trace file if they are traced
+	 */
+	private static void writeTrace() {
+		if (tracer == Tracer.NOOP) {
+			return;
+		}
+		try {
+			tracer.writeChromeTrace(Paths.get(properties.getProperty("TraceFile")));
+		} catch (IOException e) {
+			e.printStackTrace();
 		}
 	}
 	
 	/* Print the query results
 	*/
-	private static void printResults(Map<SearchResult, SearchResults> results, int maxTweetsPerProject) {
-		boolean outputTweetSummary = Boolean.parseBoolean(properties.getProperty("OutputTweetSummary", "false"));
+	private static void printResults(Map<SearchResult, SearchResults> results, int maxTweetsPerProject) throws IOException {
+		ResultSink sink = createSink(maxTweetsPerProject);
 		for (Entry<SearchResult, SearchResults> result: results.entrySet()) {
-			System.out.println("GitHub project:");
-			System.out.println(result.getKey().toString());	
-			int nTweets = 0;
-			for (SearchResult tweet: result.getValue()) {
-				System.out.println("----------------");
-				if (outputTweetSummary) {
-					System.out.println(tweet.getName() + ": " + tweet.getJSON().get("text"));
-				} else {
-					System.out.println(tweet.getJSONString());
-				}
-				nTweets++;
-				if (nTweets == maxTweetsPerProject) {
-					break;
-				}
-			}
-			System.out.println("==================");
+			sink.publish(result.getKey(), result.getValue().getResults());
 		}
 	}
 	
+	/* Create the sink results are printed to
+	 */
+	private static ResultSink createSink(int maxTweetsPerProject) {
+		return new PrintResultSink(System.out, maxTweetsPerProject,
+				Boolean.parseBoolean(properties.getProperty("OutputTweetSummary", "false")));
+	}
+	
 	/* Run REST API queries and build results map
 	 */
-	private static Map<SearchResult, SearchResults> search(int maxProjects, int maxTweetsPerProject) throws IOException {
-		Map<SearchResult, SearchResults> mapResults = new HashMap<SearchResult, SearchResults>();
-		// Create the Twitter and GitHub clients
-		GitHubRESTClient githubClient = new GitHubRESTClient(githubUser, githubPwd);
-		TwitterRESTClient twitterClient = new TwitterRESTClient(twitterOAUTH2Key, twitterOAUTH2Token);
-		
-		// Search GitHub
-		SearchResults githubResults = githubClient.searchRepositories(GITHUB_QUERY);
-		for (SearchResult githubResult: githubResults) {
-			// Search Twitter for a GitHub project
-			SearchResults twitterResults = twitterClient.searchTweets("github " + githubResult.getName().replace('/', ' '));
-			if (twitterResults.size() > 0) {
-				// Add the Twitter results to the GitHub result
-				mapResults.put(githubResult, twitterResults);
-			}
-			// If we don't have enough results then get the next Twitter search result page
-			while (twitterResults.size() < maxTweetsPerProject) {
-				if (!twitterClient.getNextSearchResults(twitterResults)) {
-					break;
+	private static Map<SearchResult, SearchResults> search(int maxProjects, int maxTweetsPerProject,
+			int searchThreads) throws IOException {
+		try (ResultStore resultStore = openResultStore();
+				ConcurrentSearch concurrentSearch = createConcurrentSearch(searchThreads)) {
+			concurrentSearch.setResultStore(resultStore);
+			concurrentSearch.setIncremental(Boolean.parseBoolean(properties.getProperty("IncrementalSearch", "false")));
+			return concurrentSearch.search(GITHUB_QUERY, maxProjects, maxTweetsPerProject);
+		}
+	}
+	
+	/* Keep running REST API queries and printing new results until the JVM is stopped
+	 */
+	private static void runDaemon(int maxProjects, int maxTweetsPerProject, int searchThreads) throws IOException {
+		ResultStore resultStore = openResultStore();
+		ConcurrentSearch concurrentSearch = createConcurrentSearch(searchThreads);
+		concurrentSearch.setResultStore(resultStore);
+		BuzzDaemon daemon = new BuzzDaemon(concurrentSearch, createSink(maxTweetsPerProject), GITHUB_QUERY,
+				maxProjects, maxTweetsPerProject);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			daemon.close();
+			concurrentSearch.close();
+			reportMetrics();
+			writeTrace();
+			if (resultStore != null) {
+				try {
+					resultStore.close();
+				} catch (IOException e) {
+					e.printStackTrace();
 				}
 			}
-			
-			// The githubResults for loop will keep requesting new results pages as long as they exist
-			// Break out of the loop if we have enough results
-			if (mapResults.size() >= maxProjects) {
-				break;
-			}
+		}, "ReactiveBuzz-shutdown"));
+		daemon.start(Duration.ofSeconds(getIntProperty("ProjectRefreshSeconds", PROJECT_REFRESH_SECONDS)),
+				Duration.ofSeconds(getIntProperty("TweetRefreshSeconds", TWEET_REFRESH_SECONDS)));
+	}
+	
+	/* Create the Twitter and GitHub clients sharing a HTTP connection pool and response cache
+	 */
+	private static ConcurrentSearch createConcurrentSearch(int searchThreads) throws IOException {
+		HttpTransport transport = new HttpClientTransport(
+				Duration.ofSeconds(getIntProperty("ConnectTimeoutSeconds",
+						(int) HttpClientTransport.DEFAULT_CONNECT_TIMEOUT.getSeconds())),
+				Duration.ofSeconds(getIntProperty("RequestTimeoutSeconds",
+						(int) HttpClientTransport.DEFAULT_REQUEST_TIMEOUT.getSeconds())),
+				Duration.ofSeconds(getIntProperty("ReadTimeoutSeconds",
+						(int) HttpClientTransport.DEFAULT_READ_TIMEOUT.getSeconds())));
+		GitHubRESTClient githubClient = new GitHubRESTClient(githubUser, githubPwd, transport);
+		TwitterRESTClient twitterClient = new TwitterRESTClient(twitterOAUTH2Key, twitterOAUTH2Token, transport);
+		boolean rateLimitPacing = Boolean.parseBoolean(properties.getProperty("RateLimitPacing", "false"));
+		githubClient.setRateLimitPacing(rateLimitPacing);
+		twitterClient.setRateLimitPacing(rateLimitPacing);
+		githubClient.setMetricsRegistry(metrics);
+		twitterClient.setMetricsRegistry(metrics);
+		githubClient.setTracer(tracer);
+		twitterClient.setTracer(tracer);
+		RetryPolicy retryPolicy = new RetryPolicy(getIntProperty("MaxRetries", RetryPolicy.DEFAULT_MAX_RETRIES),
+				RetryPolicy.DEFAULT_BASE_DELAY, RetryPolicy.DEFAULT_MAX_DELAY);
+		retryPolicy.setHedging(Boolean.parseBoolean(properties.getProperty("HedgeRequests", "false")));
+		githubClient.setRetryPolicy(retryPolicy);
+		twitterClient.setRetryPolicy(retryPolicy);
+		boolean circuitBreaking = Boolean.parseBoolean(properties.getProperty("CircuitBreaker", "true"));
+		githubClient.setCircuitBreaking(circuitBreaking);
+		twitterClient.setCircuitBreaking(circuitBreaking);
+		int responseCacheMB = getIntProperty("ResponseCacheMB", RESPONSE_CACHE_MB);
+		if (responseCacheMB > 0) {
+			SearchResponseCache responseCache = new SearchResponseCache(responseCacheMB * 1024L * 1024L);
+			githubClient.setResponseCache(responseCache, getIntProperty("GitHubCacheTtlSeconds", GITHUB_CACHE_TTL_SECONDS));
+			twitterClient.setResponseCache(responseCache, getIntProperty("TwitterCacheTtlSeconds", TWITTER_CACHE_TTL_SECONDS));
 		}
-		
-		return mapResults;
+		// The full Tweet JSON is only needed when it is printed
+		twitterClient.setRetainRawResults(!Boolean.parseBoolean(properties.getProperty("OutputTweetSummary", "false")));
+		ConcurrentSearch concurrentSearch = new ConcurrentSearch(githubClient, twitterClient, searchThreads);
+		concurrentSearch.setPrefetchThreshold(getIntProperty("PrefetchThreshold", PREFETCH_THRESHOLD));
+		concurrentSearch.setTracer(tracer);
+		concurrentSearch.setPartialResults(Boolean.parseBoolean(properties.getProperty("PartialResults", "false")));
+		if (Boolean.parseBoolean(properties.getProperty("BatchTwitterSearches", "false"))) {
+			concurrentSearch.setBatchQueryLength(TwitterRESTClient.MAX_QUERY_LENGTH);
+		}
+		return concurrentSearch;
+	}
+	
+	/* Open the result store or return null if results are not kept
+	 */
+	private static ResultStore openResultStore() throws IOException {
+		String resultStoreFile = properties.getProperty("ResultStoreFile");
+		if (resultStoreFile == null || resultStoreFile.isEmpty()) {
+			return null;
+		}
+		return new ResultStore(Paths.get(resultStoreFile));
 	}
 	
 	/* Parse the input arguments and return the properties filename
@@ -153,6 +251,15 @@ public final class ReactiveBuzz {
 		getPropertyValues(is);
 	}
 	
+	/* Get an integer property value or the default if it is not set
+	 */
+	private static int getIntProperty(String name, int defaultValue) {
+		if (properties.containsKey(name)) {
+			return Integer.parseInt(properties.getProperty(name));
+		}
+		return defaultValue;
+	}
+	
 	/* Get property values from a .properties file
 	 */
 	private static void getPropertyValues(InputStream is) throws IOException {
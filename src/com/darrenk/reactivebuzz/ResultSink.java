@@ -0,0 +1,18 @@
+package com.darrenk.reactivebuzz;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives the Tweets found for GitHub projects
+ */
+public interface ResultSink {
+	
+	/**
+	 * Publish the Tweets found for a GitHub project
+	 * @param project The GitHub project
+	 * @param tweets The Tweets found for the project
+	 * @throws IOException
+	 */
+	public void publish(SearchResult project, List<SearchResult> tweets) throws IOException;
+}
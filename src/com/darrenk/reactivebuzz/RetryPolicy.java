@@ -0,0 +1,199 @@
+package com.darrenk.reactivebuzz;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.darrenk.reactivebuzz.metrics.Histogram;
+
+/**
+ * Decides when failed or slow idempotent REST calls are sent again.
+ * GET requests are retried after a connection failure or timeout, a server error, or a rate limit
+ * response with Retry-After: a 429 Too Many Requests or a secondary rate limit (a 403 Forbidden).
+ * A rate limit response without Retry-After is returned, leaving the wait for the limit to reset
+ * to the RateLimitGovernor rather than using retries up on short backoffs.
+ * Retries back off exponentially with full jitter. A Retry-After header sets the least delay,
+ * and a response asking for a longer wait than the maximum delay is returned rather than retried.
+ * Optionally a GET request is hedged: a duplicate is sent once the first has taken longer than the
+ * 95th percentile latency of its endpoint, and whichever responds first is used.
+ * A policy can be shared by many clients and threads.
+ */
+public class RetryPolicy {
+	/**
+	 * A policy that never retries or hedges. It cannot be changed.
+	 */
+	public static final RetryPolicy NONE = new RetryPolicy(0, Duration.ZERO, Duration.ZERO);
+
+	public static final int DEFAULT_MAX_RETRIES = 3;
+	public static final Duration DEFAULT_BASE_DELAY = Duration.ofMillis(500);
+	public static final Duration DEFAULT_MAX_DELAY = Duration.ofSeconds(30);
+
+	static final String HEADER_RETRY_AFTER = "Retry-After";
+	private static final int HTTP_TOO_MANY_REQUESTS = 429;
+	private static final double HEDGE_PERCENTILE = 0.95;
+	// Latencies measured before an endpoint is hedged
+	private static final int MIN_HEDGE_SAMPLES = 20;
+
+	private final int maxRetries;
+	private final long baseDelayMillis;
+	private final long maxDelayMillis;
+	private volatile boolean hedging;
+	private final ConcurrentMap<String, Histogram> latencies = new ConcurrentHashMap<String, Histogram>();
+
+	/**
+	 * Constructor for a policy with the default retries and delays
+	 */
+	public RetryPolicy() {
+		this(DEFAULT_MAX_RETRIES, DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY);
+	}
+
+	/**
+	 * Constructor
+	 * @param maxRetries The number of times a request is sent again
+	 * @param baseDelay The delay before the first retry is chosen at random up to this, doubling for each retry
+	 * @param maxDelay The longest delay before a retry
+	 */
+	public RetryPolicy(int maxRetries, Duration baseDelay, Duration maxDelay) {
+		this.maxRetries = maxRetries;
+		this.baseDelayMillis = baseDelay.toMillis();
+		this.maxDelayMillis = maxDelay.toMillis();
+	}
+
+	/**
+	 * @return The number of times a request is sent again
+	 */
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+
+	/**
+	 * Set whether slow GET requests are hedged with a duplicate request.
+	 * Hedging reads whole response bodies before they are parsed.
+	 * @param hedging True to hedge requests
+	 * @throws UnsupportedOperationException If this is {@link #NONE}
+	 */
+	public void setHedging(boolean hedging) {
+		if (this == NONE) {
+			throw new UnsupportedOperationException("RetryPolicy.NONE cannot be changed");
+		}
+		this.hedging = hedging;
+	}
+
+	/**
+	 * @return True if slow GET requests are hedged
+	 */
+	public boolean isHedging() {
+		return hedging;
+	}
+
+	/**
+	 * Get the delay before retrying a response
+	 * @param exchange The REST call with its response code and headers
+	 * @param attempt The number of retries already made
+	 * @return The delay in milliseconds, or -1 if the response is used as it is
+	 */
+	long getRetryDelay(RESTExchange exchange, int attempt) {
+		int responseCode = exchange.getResponseCode();
+		String retryAfter = exchange.getResponseHeader(HEADER_RETRY_AFTER);
+		boolean retryable = responseCode >= HttpURLConnection.HTTP_INTERNAL_ERROR
+				|| ((responseCode == HTTP_TOO_MANY_REQUESTS || responseCode == HttpURLConnection.HTTP_FORBIDDEN)
+						&& retryAfter != null);
+		if (!retryable || attempt >= maxRetries) {
+			return -1;
+		}
+		long delay = getBackoff(attempt);
+		if (retryAfter != null) {
+			long retryAfterMillis = parseRetryAfter(retryAfter);
+			if (retryAfterMillis > maxDelayMillis) {
+				return -1;
+			}
+			delay = Math.max(delay, retryAfterMillis);
+		}
+		return delay;
+	}
+
+	/**
+	 * Get the delay before retrying a failed request
+	 * @param failure The failure, which may be wrapped by a future
+	 * @param attempt The number of retries already made
+	 * @return The delay in milliseconds, or -1 if the failure is not retried
+	 */
+	long getRetryDelay(Throwable failure, int attempt) {
+		Throwable cause = unwrap(failure);
+		// Interruptions other than socket timeouts mean the caller has given up
+		boolean retryable = cause instanceof IOException &&
+				(!(cause instanceof InterruptedIOException) || cause instanceof SocketTimeoutException);
+		if (!retryable || attempt >= maxRetries) {
+			return -1;
+		}
+		return getBackoff(attempt);
+	}
+
+	/**
+	 * Get how long to wait for a response before sending a hedged request
+	 * @param endpoint The REST API endpoint
+	 * @return The delay in nanoseconds, or -1 if too few latencies have been measured
+	 */
+	long getHedgeDelayNanos(String endpoint) {
+		Histogram histogram = latencies.get(endpoint);
+		if (histogram == null || histogram.getCount() < MIN_HEDGE_SAMPLES) {
+			return -1;
+		}
+		return histogram.getPercentile(HEDGE_PERCENTILE);
+	}
+
+	/**
+	 * Record the latency of a response, used to choose when requests to its endpoint are hedged
+	 * @param endpoint The REST API endpoint
+	 * @param nanos The time from sending the request until the whole response was received
+	 */
+	void recordLatency(String endpoint, long nanos) {
+		latencies.computeIfAbsent(endpoint, e -> new Histogram()).record(nanos);
+	}
+
+	/**
+	 * Get the cause of a failure wrapped by a future
+	 * @param failure The failure
+	 * @return The underlying failure
+	 */
+	static Throwable unwrap(Throwable failure) {
+		while ((failure instanceof CompletionException || failure instanceof ExecutionException)
+				&& failure.getCause() != null) {
+			failure = failure.getCause();
+		}
+		return failure;
+	}
+
+	/* A random delay up to the base delay doubled for each retry made, capped at the maximum delay
+	 */
+	private long getBackoff(int attempt) {
+		long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt, 30));
+		return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+	}
+
+	/* Parse a Retry-After value in seconds or as a HTTP date, returning 0 if it cannot be parsed
+	 */
+	private static long parseRetryAfter(String retryAfter) {
+		try {
+			return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+		} catch (NumberFormatException e) {
+			// Not delay seconds
+		}
+		try {
+			ZonedDateTime at = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+			return Math.max(0, at.toInstant().toEpochMilli() - System.currentTimeMillis());
+		} catch (DateTimeParseException e) {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,253 @@
+package com.darrenk.reactivebuzz;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A size bounded cache of REST API search response pages keyed by the full request URL.
+ * Entries are fresh for the time to live given by the client that stored them and
+ * are then revalidated with a conditional request if the server returned an ETag.
+ * The least recently used entries are evicted when the cache is full.
+ * A cache can be shared by many clients and threads.
+ */
+public class SearchResponseCache {
+	static final String HEADER_ETAG = "ETag";
+
+	private final long maxBytes;
+	// Guarded by this
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private long bytes;
+
+	/**
+	 * Constructor
+	 * @param maxBytes The maximum total size of the cached response bodies
+	 */
+	public SearchResponseCache(long maxBytes) {
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException("maxBytes must not be negative: " + maxBytes);
+		}
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Get the cached response for a URL, fresh or not
+	 * @param url The full request URL
+	 * @return The cached response or null if the URL is not cached
+	 */
+	public synchronized Entry get(String url) {
+		return entries.get(url);
+	}
+
+	/**
+	 * Cache the response to a completed REST call
+	 * @param exchange The completed REST call. Its response headers are cached with the body.
+	 * @param body The response body
+	 * @param ttlMillis How long the response is fresh for
+	 * @return The new cache entry
+	 */
+	public Entry put(RESTExchange exchange, byte[] body, long ttlMillis) {
+		return put(new Entry(exchange.getUrl(), body, exchange.getResponseHeaders(),
+				System.currentTimeMillis() + ttlMillis));
+	}
+
+	/**
+	 * Refresh a cached response the server reported as not modified.
+	 * Headers returned with the not modified response replace the cached values.
+	 * @param entry The cached response that was revalidated
+	 * @param exchange The completed conditional REST call
+	 * @param ttlMillis How long the response is fresh for
+	 * @return The refreshed cache entry
+	 */
+	public Entry revalidate(Entry entry, RESTExchange exchange, long ttlMillis) {
+		Map<String, List<String>> headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+		headers.putAll(entry.headers);
+		headers.putAll(exchange.getResponseHeaders());
+		return put(new Entry(entry.url, entry.body, headers, System.currentTimeMillis() + ttlMillis));
+	}
+
+	/**
+	 * Wrap a response body stream so that the body is cached once the response has been
+	 * successfully processed. The response is only cached when Recorder.commit() is called.
+	 * @param exchange The REST call the response is for
+	 * @param body The response body stream
+	 * @param ttlMillis How long the response is fresh for
+	 * @return The recording stream
+	 */
+	public Recorder record(RESTExchange exchange, InputStream body, long ttlMillis) {
+		return new Recorder(exchange, body, ttlMillis);
+	}
+
+	/**
+	 * Remove a URL from the cache
+	 * @param url The full request URL
+	 */
+	public synchronized void remove(String url) {
+		Entry removed = entries.remove(url);
+		if (removed != null) {
+			bytes -= removed.body.length;
+		}
+	}
+
+	/**
+	 * Remove every cached response
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * @return The number of cached responses
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return The total size of the cached response bodies
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/* Add an entry and evict the least recently used entries until the cache fits
+	 */
+	private synchronized Entry put(Entry entry) {
+		remove(entry.url);
+		if (entry.body.length > maxBytes) {
+			return entry;
+		}
+		entries.put(entry.url, entry);
+		bytes += entry.body.length;
+		Iterator<Entry> lru = entries.values().iterator();
+		while (bytes > maxBytes && lru.hasNext()) {
+			bytes -= lru.next().body.length;
+			lru.remove();
+		}
+		return entry;
+	}
+
+	/**
+	 * A cached response. Entries are immutable, refreshing a response replaces its entry.
+	 */
+	public static final class Entry {
+		private final String url;
+		private final byte[] body;
+		private final Map<String, List<String>> headers;
+		private final long expiresAtMillis;
+
+		private Entry(String url, byte[] body, Map<String, List<String>> headers, long expiresAtMillis) {
+			this.url = url;
+			this.body = body;
+			Map<String, List<String>> copy = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+			for (Map.Entry<String, List<String>> header: headers.entrySet()) {
+				copy.put(header.getKey(), Collections.unmodifiableList(new ArrayList<String>(header.getValue())));
+			}
+			this.headers = Collections.unmodifiableMap(copy);
+			this.expiresAtMillis = expiresAtMillis;
+		}
+
+		/**
+		 * @return The full request URL
+		 */
+		public String getUrl() {
+			return url;
+		}
+
+		/**
+		 * @return The response body. The array must not be modified.
+		 */
+		public byte[] getBody() {
+			return body;
+		}
+
+		/**
+		 * @return The response headers
+		 */
+		public Map<String, List<String>> getHeaders() {
+			return headers;
+		}
+
+		/**
+		 * @return The ETag of the response or null if the server did not return one
+		 */
+		public String getETag() {
+			List<String> values = headers.get(HEADER_ETAG);
+			return values == null || values.isEmpty() ? null : values.get(values.size() - 1);
+		}
+
+		/**
+		 * @return True if the response can be used without revalidating it
+		 */
+		public boolean isFresh() {
+			return System.currentTimeMillis() < expiresAtMillis;
+		}
+	}
+
+	/**
+	 * A response body stream that keeps a copy of the bytes read through it
+	 */
+	public final class Recorder extends FilterInputStream {
+		private final RESTExchange exchange;
+		private final long ttlMillis;
+		private final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+		private Recorder(RESTExchange exchange, InputStream body, long ttlMillis) {
+			super(body);
+			this.exchange = exchange;
+			this.ttlMillis = ttlMillis;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				copy.write(b);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				copy.write(b, off, n);
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			// Skipped bytes must be recorded too
+			byte[] skipped = new byte[(int) Math.min(n, 8192)];
+			int read = read(skipped, 0, skipped.length);
+			return Math.max(read, 0);
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		/**
+		 * Read the rest of the response and cache it
+		 * @throws IOException
+		 */
+		public void commit() throws IOException {
+			byte[] rest = new byte[8192];
+			while (read(rest, 0, rest.length) != -1) {
+				// Recorded by read()
+			}
+			put(exchange, copy.toByteArray(), ttlMillis);
+		}
+	}
+}
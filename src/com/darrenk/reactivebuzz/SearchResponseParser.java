@@ -0,0 +1,231 @@
+package com.darrenk.reactivebuzz;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.BiConsumer;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import com.darrenk.reactivebuzz.exception.SearchException;
+
+/**
+ * Streams a JSON search response, handing each element of the results array
+ * to a handler as soon as it has been read. Only one result element is held
+ * in memory at a time, the results array itself is never built.
+ * Every other member of the top level object is parsed normally.
+ */
+class SearchResponseParser {
+	private final Reader reader;
+	private final char[] buffer = new char[8192];
+	private int position;
+	private int limit;
+	private final StringBuilder value = new StringBuilder();
+	private final JSONParser parser = new JSONParser();
+
+	/**
+	 * Constructor
+	 * @param reader The JSON search response text
+	 */
+	SearchResponseParser(Reader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Parse a JSON search response
+	 * @param resultsName The name of the JSON array holding the query results
+	 * @param handler Called with each query result JSONObject and its JSON text in the order they are read
+	 * @return The top level JSON object without the results array
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	JSONObject parse(String resultsName, BiConsumer<JSONObject, String> handler) throws IOException {
+		JSONObject response = new JSONObject();
+		expect('{');
+		if (peekToken() == '}') {
+			read();
+			return response;
+		}
+		do {
+			skipWhitespace();
+			value.setLength(0);
+			scanString();
+			String key = (String) parseValue(value.toString());
+			expect(':');
+			if (key.equals(resultsName) && peekToken() == '[') {
+				parseResults(handler);
+			} else {
+				skipWhitespace();
+				value.setLength(0);
+				scanValue();
+				response.put(key, parseValue(value.toString()));
+			}
+		} while (hasNextMember('}'));
+
+		return response;
+	}
+
+	/* Parse the results array one element at a time
+	 */
+	private void parseResults(BiConsumer<JSONObject, String> handler) throws IOException {
+		expect('[');
+		if (peekToken() == ']') {
+			read();
+			return;
+		}
+		do {
+			skipWhitespace();
+			value.setLength(0);
+			scanValue();
+			String text = value.toString();
+			Object result = parseValue(text);
+			if (!(result instanceof JSONObject)) {
+				throw new SearchException("Expected a JSON object search result: " + text);
+			}
+			handler.accept((JSONObject) result, text);
+		} while (hasNextMember(']'));
+	}
+
+	/* Consume the separator following an object or array member.
+	 * Like the json-simple parser a missing comma separator is tolerated.
+	 * Returns false if the end of the object or array was reached.
+	 */
+	private boolean hasNextMember(char end) throws IOException {
+		int c = peekToken();
+		if (c == end) {
+			read();
+			return false;
+		}
+		if (c == -1) {
+			throw unexpected(c);
+		}
+		if (c == ',') {
+			read();
+		}
+		return true;
+	}
+
+	/* Parse scanned JSON value text
+	 */
+	private Object parseValue(String text) {
+		try {
+			return parser.parse(text);
+		} catch (ParseException e) {
+			throw new SearchException("Malformed JSON search response", e);
+		}
+	}
+
+	/* Copy the text of the next JSON value to the value buffer
+	 */
+	private void scanValue() throws IOException {
+		int c = peek();
+		if (c == '"') {
+			scanString();
+		} else if (c == '{' || c == '[') {
+			int depth = 0;
+			do {
+				c = read();
+				if (c == '"') {
+					value.append('"');
+					scanStringBody();
+					continue;
+				}
+				if (c == -1) {
+					throw unexpected(c);
+				}
+				value.append((char) c);
+				if (c == '{' || c == '[') {
+					depth++;
+				} else if (c == '}' || c == ']') {
+					depth--;
+				}
+			} while (depth > 0);
+		} else {
+			// Number, true, false or null
+			while ((c = peek()) != -1 && c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)) {
+				value.append((char) read());
+			}
+		}
+	}
+
+	/* Copy a JSON string including the quotes to the value buffer
+	 */
+	private void scanString() throws IOException {
+		int c = read();
+		if (c != '"') {
+			throw unexpected(c);
+		}
+		value.append('"');
+		scanStringBody();
+	}
+
+	/* Copy the remainder of a JSON string following the opening quote to the value buffer
+	 */
+	private void scanStringBody() throws IOException {
+		int c;
+		while ((c = read()) != '"') {
+			if (c == -1) {
+				throw unexpected(c);
+			}
+			value.append((char) c);
+			if (c == '\\') {
+				c = read();
+				if (c == -1) {
+					throw unexpected(c);
+				}
+				value.append((char) c);
+			}
+		}
+		value.append('"');
+	}
+
+	private void expect(char expected) throws IOException {
+		int c = readToken();
+		if (c != expected) {
+			throw unexpected(c);
+		}
+	}
+
+	private static SearchException unexpected(int c) {
+		return new SearchException("Malformed JSON search response: unexpected " +
+				(c == -1 ? "end of input" : "character '" + (char) c + "'"));
+	}
+
+	private void skipWhitespace() throws IOException {
+		int c;
+		while ((c = peek()) != -1 && Character.isWhitespace(c)) {
+			position++;
+		}
+	}
+
+	private int readToken() throws IOException {
+		skipWhitespace();
+		return read();
+	}
+
+	private int peekToken() throws IOException {
+		skipWhitespace();
+		return peek();
+	}
+
+	private int read() throws IOException {
+		int c = peek();
+		if (c != -1) {
+			position++;
+		}
+		return c;
+	}
+
+	private int peek() throws IOException {
+		if (position == limit) {
+			limit = reader.read(buffer, 0, buffer.length);
+			position = 0;
+			if (limit <= 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+		return buffer[position];
+	}
+}
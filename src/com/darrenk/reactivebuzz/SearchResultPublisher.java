@@ -0,0 +1,140 @@
+package com.darrenk.reactivebuzz;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the results of a REST API query page by page.
+ * A result page is only requested when the subscriber has demanded more results
+ * than are buffered, and at most one page request is in flight per subscription.
+ */
+class SearchResultPublisher implements Flow.Publisher<SearchResult> {
+	private final AbstractRESTClient provider;
+	private final String apiPath;
+	private final String query;
+
+	/**
+	 * Constructor
+	 * @param provider Provider of search results
+	 * @param apiPath REST API method
+	 * @param query The query parameter
+	 */
+	SearchResultPublisher(AbstractRESTClient provider, String apiPath, String query) {
+		this.provider = provider;
+		this.apiPath = apiPath;
+		this.query = query;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super SearchResult> subscriber) {
+		PageSubscription subscription = new PageSubscription(subscriber);
+		subscriber.onSubscribe(subscription);
+	}
+
+	/**
+	 * The state of a single subscriber.
+	 * All calls to the subscriber are made from drain(), which only one thread runs at a time.
+	 */
+	private final class PageSubscription implements Flow.Subscription {
+		private final Flow.Subscriber<? super SearchResult> subscriber;
+		private final Queue<SearchResult> buffer = new ConcurrentLinkedQueue<SearchResult>();
+		private final AtomicLong requested = new AtomicLong();
+		private final AtomicInteger wip = new AtomicInteger();
+		private volatile boolean started;
+		private volatile boolean fetching;
+		private volatile String nextPageUrl;
+		private volatile Throwable error;
+		private volatile boolean cancelled;
+		private boolean done;
+
+		PageSubscription(Flow.Subscriber<? super SearchResult> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				error = new IllegalArgumentException("Non-positive subscription request: " + n);
+			} else {
+				requested.accumulateAndGet(n, (current, add) -> {
+					long sum = current + add;
+					return sum < 0 ? Long.MAX_VALUE : sum;
+				});
+			}
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+		}
+
+		/* Request the first or next result page
+		 */
+		private void fetch() {
+			fetching = true;
+			CompletableFuture<SearchResults> page;
+			if (!started) {
+				page = provider.searchAsync(apiPath, query);
+			} else {
+				page = provider.searchPageAsync(nextPageUrl);
+			}
+			page.whenComplete((results, t) -> {
+				if (t != null) {
+					error = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+				} else {
+					buffer.addAll(results.getResults());
+					nextPageUrl = results.getNextPageUrl();
+				}
+				started = true;
+				fetching = false;
+				drain();
+			});
+		}
+
+		/* Deliver buffered results to the subscriber and request a new page when needed
+		 */
+		private void drain() {
+			if (wip.getAndIncrement() != 0) {
+				return;
+			}
+			int missed = 1;
+			do {
+				if (done) {
+					return;
+				}
+				if (cancelled) {
+					buffer.clear();
+					done = true;
+					return;
+				}
+				SearchResult result;
+				while (requested.get() > 0 && error == null && (result = buffer.poll()) != null) {
+					requested.decrementAndGet();
+					subscriber.onNext(result);
+				}
+				if (!fetching) {
+					if (error != null) {
+						done = true;
+						subscriber.onError(error);
+						return;
+					}
+					if (buffer.isEmpty() && started && nextPageUrl == null) {
+						done = true;
+						subscriber.onComplete();
+						return;
+					}
+					if (buffer.isEmpty() && requested.get() > 0) {
+						fetch();
+					}
+				}
+				missed = wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+	}
+}
@@ -4,46 +4,356 @@
 package com.darrenk.reactivebuzz;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import com.darrenk.reactivebuzz.exception.CircuitOpenException;
 import com.darrenk.reactivebuzz.exception.SearchException;
 
 /**
  * Collection-type class for managing a set of SearchResult objects.
  * The hasNext() method will check for and retrieve result pages as needed.
+ * By default every page retrieved is retained. A streaming result set retains
+ * only a window of the most recent pages, so iterating a deep search uses constant memory.
+ * By default a page that cannot be retrieved ends iteration with a SearchException. A partial
+ * result set records the failed page instead, continues with the following page where the
+ * provider can skip to it, and can request the failed pages again later.
  */
 public class SearchResults implements Iterable<SearchResult> {
 	private AbstractRESTClient provider;
 	private List<SearchResult> results;
-	private boolean hasNextPage;
+	private String nextPageUrl;
+	private int prefetchThreshold;
+	// The next page requested in the background and its URL
+	private CompletableFuture<SearchResults> prefetch;
+	private String prefetchUrl;
+	// The number of most recent pages retained or 0 to retain every page
+	private int retainedPages;
+	// The sizes of the retained pages, oldest first
+	private final Deque<Integer> pageSizes = new ArrayDeque<Integer>();
+	// The number of results evicted from the start of the window
+	private int evicted;
+	// Pages are skipped rather than failing iteration
+	private boolean partialResults;
+	// The pages the server reported were missing results
+	private int incompletePages;
+	// The pages that could not be retrieved in the order they failed
+	private final List<FailedPage> failedPages = new ArrayList<FailedPage>();
+	// The pages that have failed in a row since a page was retrieved
+	private int consecutiveFailures;
+	private static final int MAX_CONSECUTIVE_FAILED_PAGES = 2;
 	
 	/**
 	 * Constructor for a new set of search results
 	 * @param provider Provider of search results
 	 * @param results Initial set of search results
-	 * @param hasNextPage True if there is an additional page of search results available
+	 * @param nextPageUrl The HTTP API URL of the next page of search results or null if there are no more pages
 	 */
-	public SearchResults(AbstractRESTClient provider, List<SearchResult> results, boolean hasNextPage) {
+	public SearchResults(AbstractRESTClient provider, List<SearchResult> results, String nextPageUrl) {
 		this.provider = provider;
 		this.results = results;
-		this.hasNextPage = hasNextPage;
+		this.nextPageUrl = nextPageUrl;
+		pageSizes.add(results.size());
 	}
 	
 	/**
-	 * Add a set of search results to the existing set
-	 * @param searchResults The set to add
+	 * Add the next page of search results to the existing set
+	 * @param searchResults The page to add
 	 * @return true if this collection changed as a result of the call
 	 */
 	public boolean addAll(SearchResults searchResults) {
-		return this.results.addAll(searchResults.results);
+		this.nextPageUrl = searchResults.nextPageUrl;
+		consecutiveFailures = 0;
+		return addPage(searchResults);
+	}
+	
+	/* Add the results of a page, and the pages that made it up that were incomplete or failed,
+	 * without changing the next page
+	 */
+	private boolean addPage(SearchResults searchResults) {
+		boolean changed = this.results.addAll(searchResults.results);
+		pageSizes.add(searchResults.results.size());
+		incompletePages += searchResults.incompletePages;
+		failedPages.addAll(searchResults.failedPages);
+		evict();
+		return changed;
+	}
+	
+	/**
+	 * Add results that are not already in the set, such as results kept from an earlier search.
+	 * Results are matched by name against the retained results. They are added to the last page.
+	 * The next page of search results is unchanged.
+	 * @param searchResults The results to add
+	 * @return true if this collection changed as a result of the call
+	 */
+	public boolean merge(Collection<? extends SearchResult> searchResults) {
+		Set<String> names = new HashSet<String>();
+		for (SearchResult result: results) {
+			names.add(result.getName());
+		}
+		int added = 0;
+		for (SearchResult result: searchResults) {
+			if (names.add(result.getName())) {
+				results.add(result);
+				added++;
+			}
+		}
+		pageSizes.add(pageSizes.removeLast() + added);
+		return added > 0;
+	}
+	
+	/**
+	 * Add the results retrieved so far by another search that are not already in the set,
+	 * along with its incomplete and failed pages.
+	 * No more pages of the other search are requested. The next page of search results is unchanged.
+	 * @param searchResults The results to add
+	 * @return true if this collection changed as a result of the call
+	 */
+	public boolean merge(SearchResults searchResults) {
+		incompletePages += searchResults.incompletePages;
+		for (FailedPage page: searchResults.failedPages) {
+			// The other search's iteration is not resumed
+			failedPages.add(new FailedPage(page.url, false));
+		}
+		return merge(searchResults.results);
+	}
+	
+	/**
+	 * @return The HTTP API URL of the next page of search results or null if there are no more pages
+	 */
+	public String getNextPageUrl() {
+		return nextPageUrl;
+	}
+	
+	/**
+	 * @return True if there are additional pages of search results
+	 */
+	public boolean hasNextPage() {
+		return nextPageUrl != null;
+	}
+	
+	/**
+	 * Set whether pages that cannot be retrieved are recorded instead of failing iteration.
+	 * Iteration continues with the page following a failed page if the provider can skip to it,
+	 * and otherwise ends. No more than two pages in a row are skipped. Iteration still fails with
+	 * CircuitOpenException when a page is not requested because its endpoint's circuit breaker is open.
+	 * @param partialResults True to record failed pages
+	 */
+	public void setPartialResults(boolean partialResults) {
+		this.partialResults = partialResults;
+	}
+	
+	/**
+	 * @return True if every page retrieved was complete and no page failed
+	 */
+	public boolean isComplete() {
+		return incompletePages == 0 && failedPages.isEmpty();
+	}
+	
+	/**
+	 * @return The number of pages the server reported were missing results, such as when the search
+	 * timed out on the server
+	 */
+	public int getIncompletePageCount() {
+		return incompletePages;
+	}
+	
+	/**
+	 * @return The HTTP API URLs of the pages that could not be retrieved
+	 */
+	public List<String> getFailedPageUrls() {
+		List<String> urls = new ArrayList<String>(failedPages.size());
+		for (FailedPage page: failedPages) {
+			urls.add(page.url);
+		}
+		return urls;
+	}
+	
+	/**
+	 * Request the pages that could not be retrieved again without blocking the calling thread.
+	 * The results of the pages retrieved are added after the existing results. Iteration resumes
+	 * from a page that ended iteration. Pages that fail again stay recorded as failed.
+	 * @return A future completed with true if new results are added.
+	 * The results must not be iterated until it completes.
+	 */
+	public CompletableFuture<Boolean> refetchFailedPagesAsync() {
+		List<FailedPage> pages = new ArrayList<FailedPage>(failedPages);
+		List<CompletableFuture<SearchResults>> requests = new ArrayList<CompletableFuture<SearchResults>>();
+		for (FailedPage page: pages) {
+			requests.add(provider.searchPageAsync(page.url));
+		}
+		return CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[requests.size()]))
+				.handle((ignored, e) -> {
+					int nResults = size();
+					for (int i = 0; i < pages.size(); i++) {
+						if (requests.get(i).isCompletedExceptionally()) {
+							continue;
+						}
+						failedPages.remove(pages.get(i));
+						SearchResults page = requests.get(i).join();
+						if (pages.get(i).endedIteration && nextPageUrl == null) {
+							addAll(page);
+						} else {
+							addPage(page);
+						}
+					}
+					return size() > nResults;
+				});
+	}
+	
+	/* Record the next page as failed and skip to the page following it if the provider can
+	 */
+	private void skipFailedPage() {
+		String failedUrl = nextPageUrl;
+		nextPageUrl = ++consecutiveFailures <= MAX_CONSECUTIVE_FAILED_PAGES ?
+				provider.getFollowingPageUrl(failedUrl) : null;
+		failedPages.add(new FailedPage(failedUrl, nextPageUrl == null));
+	}
+	
+	/**
+	 * @return The search results retrieved so far and retained, without requesting any more pages
+	 */
+	public List<SearchResult> getResults() {
+		return Collections.unmodifiableList(results);
+	}
+	
+	/**
+	 * Set how many result pages are retained. Once more pages have been retrieved the oldest
+	 * pages are evicted. Results can then only be iterated once, by a single iterator or stream,
+	 * and iteration fails if it reaches evicted results.
+	 * @param retainedPages The number of most recent pages to retain, or 0 to retain every page (the default)
+	 */
+	public void setRetainedPages(int retainedPages) {
+		if (retainedPages < 0) {
+			throw new IllegalArgumentException("retainedPages must not be negative: " + retainedPages);
+		}
+		this.retainedPages = retainedPages;
+		evict();
+	}
+	
+	/**
+	 * Get a sequential stream of the search results, requesting result pages as the stream is consumed
+	 * @return The stream
+	 */
+	public Stream<SearchResult> stream() {
+		return StreamSupport.stream(this::spliterator, SearchResultSpliterator.CHARACTERISTICS, false);
+	}
+	
+	/**
+	 * Get a parallel stream of the search results, requesting result pages as the stream is consumed.
+	 * Result pages are requested by the thread splitting the stream, and the results retrieved
+	 * are processed in parallel while the next page is requested.
+	 * @return The stream
+	 */
+	public Stream<SearchResult> parallelStream() {
+		return StreamSupport.stream(this::spliterator, SearchResultSpliterator.CHARACTERISTICS, true);
+	}
+	
+	/* Evict the oldest pages beyond the retained pages
+	 */
+	private void evict() {
+		while (retainedPages > 0 && pageSizes.size() > retainedPages) {
+			int pageSize = pageSizes.poll();
+			results.subList(0, pageSize).clear();
+			evicted += pageSize;
+		}
+	}
+	
+	/**
+	 * Set when iteration requests the next page of search results in the background.
+	 * @param prefetchThreshold The next page is requested once this many or fewer of the
+	 * results retrieved so far are left to iterate, or 0 to only request pages when they are needed
+	 */
+	public void setPrefetchThreshold(int prefetchThreshold) {
+		this.prefetchThreshold = prefetchThreshold;
 	}
 	
 	/* Get the next page of search results from the server
 	 */
 	private void getNextResultsPage() throws IOException {
-		hasNextPage = provider.getNextSearchResults(this);
+		provider.getNextSearchResults(this);
+	}
+	
+	/**
+	 * Make sure the result at an index has been retrieved if it exists, requesting result pages as needed.
+	 * @param index The index of the result
+	 * @return True if the result exists
+	 */
+	boolean retrieve(int index) {
+		while (index >= size() && hasNextPage() && !addPrefetchedPage(index)) {
+			try {
+				getNextResultsPage();
+			} catch (IOException e) {
+				if (!partialResults || e instanceof InterruptedIOException) {
+					throw new SearchException("Failed getting the next search result page", e);
+				}
+				skipFailedPage();
+			} catch (CircuitOpenException e) {
+				// Skipping pages while the circuit is open would give up on them without sending a request
+				throw e;
+			} catch (SearchException e) {
+				if (!partialResults) {
+					throw e;
+				}
+				skipFailedPage();
+			}
+		}
+		
+		return index < size();
+	}
+	
+	/* Get a retrieved result that has not been evicted
+	 */
+	private SearchResult get(int index) {
+		if (index < evicted) {
+			throw new IllegalStateException("Search result " + index + " has been evicted from the retained pages");
+		}
+		return results.get(index - evicted);
+	}
+	
+	/* Request the next page of search results in the background if iteration has reached the threshold
+	 */
+	private void prefetch(int index) {
+		if (prefetchThreshold > 0 && prefetch == null && hasNextPage() && size() - index <= prefetchThreshold) {
+			prefetchUrl = nextPageUrl;
+			prefetch = provider.searchPageAsync(nextPageUrl);
+		}
+	}
+	
+	/* Add the page requested in the background if it is still the next page.
+	 * Returns false if the next page still has to be requested.
+	 */
+	private boolean addPrefetchedPage(int index) {
+		CompletableFuture<SearchResults> page = prefetch;
+		prefetch = null;
+		if (page == null || !prefetchUrl.equals(nextPageUrl)) {
+			return false;
+		}
+		try {
+			addAll(page.join());
+		} catch (CompletionException | CancellationException e) {
+			// Request the page again and report any failure then
+			return false;
+		}
+		// Keep going if filtering removed all results from the page
+		return index < size() || !hasNextPage();
 	}
 
 	@Override
@@ -51,6 +361,15 @@ public class SearchResults implements Iterable<SearchResult> {
 		return new SearchResultIterator();
 	}
 
+	/**
+	 * Get a spliterator that requests result pages as they are needed
+	 * @see SearchResultSpliterator
+	 */
+	@Override
+	public Spliterator<SearchResult> spliterator() {
+		return new SearchResultSpliterator();
+	}
+
 	/**
 	 * Inner class implementing the iterator for the outer classes' search results
 	 */
@@ -66,21 +385,15 @@ public class SearchResults implements Iterable<SearchResult> {
 		
 		@Override
 		public boolean hasNext() {
-			if (index >= results.size() && hasNextPage) {
-				try {
-					getNextResultsPage();
-				} catch (IOException e) {
-					throw new SearchException("Failed getting the next search result page", e);
-				}
-			}
-			
-			return index < results.size();
+			return retrieve(index);
 		}
 
 		@Override
 		public SearchResult next() {
 			if (hasNext()) {
-				return results.get(index++);
+				SearchResult result = get(index++);
+				prefetch(index);
+				return result;
 			}
 
 			throw new NoSuchElementException();
@@ -95,10 +408,82 @@ public class SearchResults implements Iterable<SearchResult> {
 	}
 
 	/**
-	 * Returns the number of search results
+	 * Inner class implementing the spliterator for the outer classes' search results.
+	 * Splitting hands out the first half of the results retrieved but not yet traversed, copied so
+	 * that they can be traversed by another thread. Once a single result is left and there are more
+	 * result pages it is handed out and the next split requests the next page.
+	 * The size is not known, as failed pages can be added later, so it is only estimated.
+	 */
+	private final class SearchResultSpliterator implements Spliterator<SearchResult> {
+		static final int CHARACTERISTICS = Spliterator.ORDERED | Spliterator.NONNULL;
+		private int index;
+
+		@Override
+		public boolean tryAdvance(Consumer<? super SearchResult> action) {
+			if (!retrieve(index)) {
+				return false;
+			}
+			SearchResult result = get(index++);
+			prefetch(index);
+			action.accept(result);
+			return true;
+		}
+
+		@Override
+		public Spliterator<SearchResult> trySplit() {
+			if (!retrieve(index)) {
+				return null;
+			}
+			int remaining = size() - index;
+			int split = hasNextPage() ? (remaining + 1) / 2 : remaining / 2;
+			if (split == 0) {
+				return null;
+			}
+			Object[] prefix = new Object[split];
+			for (int i = 0; i < split; i++) {
+				prefix[i] = get(index++);
+			}
+			prefetch(index);
+			return Spliterators.spliterator(prefix, CHARACTERISTICS | Spliterator.IMMUTABLE);
+		}
+
+		@Override
+		public long estimateSize() {
+			return hasNextPage() ? Long.MAX_VALUE : size() - index;
+		}
+
+		@Override
+		public int characteristics() {
+			return CHARACTERISTICS;
+		}
+	}
+
+	/**
+	 * A page that could not be retrieved
+	 */
+	private static final class FailedPage {
+		private final String url;
+		// No page following it was requested
+		private final boolean endedIteration;
+
+		FailedPage(String url, boolean endedIteration) {
+			this.url = url;
+			this.endedIteration = endedIteration;
+		}
+	}
+
+	/**
+	 * Record that the server reported a page of these results was missing results
+	 */
+	void addIncompletePage() {
+		incompletePages++;
+	}
+
+	/**
+	 * Returns the number of search results retrieved, including any evicted results
 	 * @return the number of search results
 	 */
 	public int size() {
-		return results.size();
+		return evicted + results.size();
 	}
 }
@@ -0,0 +1,14 @@
+package com.darrenk.reactivebuzz.exception;
+
+/**
+ * Thrown instead of sending a request to a REST API endpoint whose circuit breaker is open
+ */
+public class CircuitOpenException extends SearchException {
+
+	private static final long serialVersionUID = -3120874526930427161L;
+
+	public CircuitOpenException(String s) {
+		super(s);
+	}
+
+}
@@ -2,6 +2,9 @@ package com.darrenk.reactivebuzz.github;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -9,8 +12,11 @@ import org.json.simple.JSONObject;
 
 import com.darrenk.reactivebuzz.AbstractRESTClient;
 import com.darrenk.reactivebuzz.EncryptUtils;
+import com.darrenk.reactivebuzz.RateLimitGovernor;
+import com.darrenk.reactivebuzz.RESTExchange;
 import com.darrenk.reactivebuzz.SearchResult;
 import com.darrenk.reactivebuzz.SearchResults;
+import com.darrenk.reactivebuzz.transport.HttpTransport;
 
 /**
  * A REST API client to query for GitHub Repositories
@@ -30,6 +36,12 @@ public class GitHubRESTClient extends AbstractRESTClient {
 	 * @see https://developer.github.com/v3/search/#rate-limit
 	 */
 	private static final String RATE_LIMIT = "rate_limit";
+	private static final RateLimitGovernor SEARCH_RATE_LIMIT = RateLimitGovernor.forApi("api.github.com/search");
+	private static final String PUSHED_SINCE_QUALIFIER = " pushed:>=";
+	private static final Pattern PAGE_PARAMETER = Pattern.compile("([?&]page=)(\\d+)");
+	
+	// The latest push time seen for each query
+	private final ConcurrentMap<String, String> pushedSince = new ConcurrentHashMap<String, String>();
 
 	/**
 	 * Constructor to use for authenticated REST calls
@@ -40,6 +52,16 @@ public class GitHubRESTClient extends AbstractRESTClient {
 		super(username, password, BASE_API_URL);
 	}
 	
+	/**
+	 * Constructor to use for authenticated REST calls
+	 * @param key Username
+	 * @param token Password
+	 * @param transport The HTTP transport used to send requests
+	 */
+	public GitHubRESTClient(String username, String password, HttpTransport transport) {
+		super(username, password, BASE_API_URL, transport);
+	}
+	
 	/**
 	 * Constructor to use for unauthenticated REST calls
 	 */
@@ -63,6 +85,65 @@ public class GitHubRESTClient extends AbstractRESTClient {
 		return search(SEARCH_REPO, query);
 	}
 	
+	/**
+	 * Query for GitHub Repositories pushed since the latest push time seen for the query and add them
+	 * to a result set. Result pages are requested until one reaches the repositories already seen.
+	 * If no repositories have been seen for the query only the first page is requested.
+	 * @param query The query parameter, without a pushed qualifier
+	 * @param results The existing result set. New repositories are appended to it.
+	 * @return True if new repositories were added
+	 * @throws IOException
+	 */
+	public boolean pollNewRepositories(String query, SearchResults results) throws IOException {
+		String since = pushedSince.get(query);
+		SearchResults found;
+		if (since == null) {
+			found = searchRepositories(query);
+		} else {
+			// Results are sorted by push time so only the last repository of a page needs checking
+			found = searchRepositories(query + PUSHED_SINCE_QUALIFIER + since);
+			while (found.hasNextPage() && !isPushedBefore(found.getResults(), since)) {
+				getNextSearchResults(found);
+			}
+		}
+		for (SearchResult repository: found.getResults()) {
+			String pushedAt = ((Repository) repository).getPushedAt();
+			if (pushedAt != null) {
+				setPushedSince(query, pushedAt);
+			}
+		}
+		return results.merge(found);
+	}
+	
+	/* True if the last repository found was pushed at or before a push time
+	 */
+	private static boolean isPushedBefore(List<SearchResult> found, String since) {
+		if (found.isEmpty()) {
+			return false;
+		}
+		String pushedAt = ((Repository) found.get(found.size() - 1)).getPushedAt();
+		return pushedAt == null || pushedAt.compareTo(since) <= 0;
+	}
+	
+	/**
+	 * Get the latest push time seen by polls for a query
+	 * @param query The query parameter
+	 * @return The push time as an ISO 8601 UTC timestamp or null if no repositories have been seen
+	 */
+	public String getPushedSince(String query) {
+		return pushedSince.get(query);
+	}
+	
+	/**
+	 * Set the push time that polls for a query return repositories from, such as one kept from an earlier run.
+	 * The time only replaces an earlier time that has been seen.
+	 * @param query The query parameter
+	 * @param pushedAt The push time as an ISO 8601 UTC timestamp, which orders the same as the text
+	 */
+	public void setPushedSince(String query, String pushedAt) {
+		pushedSince.merge(query, pushedAt, (current, pushed) -> pushed.compareTo(current) > 0 ? pushed : current);
+	}
+	
 	@Override
 	protected String getQueryResultsObjectName() {
 		return "items";
@@ -79,10 +160,10 @@ public class GitHubRESTClient extends AbstractRESTClient {
 	}
 
 	@Override
-	protected String getNextPageUrl(JSONObject queryResults)
+	protected String getNextPageUrl(RESTExchange exchange)
 	{
 		String nextPageUrl = null;
-		String links = connection.getHeaderField(HEADER_SEARCH_LINK);
+		String links = exchange.getResponseHeader(HEADER_SEARCH_LINK);
 		if (links != null) {
 			Pattern pattern = Pattern.compile("<(.*?)>; rel=\"next\"");
 			Matcher matcher = pattern.matcher(links);
@@ -93,23 +174,44 @@ public class GitHubRESTClient extends AbstractRESTClient {
 	}
 	
 	@Override
-	protected void setSearchRateLimits() {
-		remainingSearchRequests = Long.parseLong(connection.getHeaderField(HEADER_RATE_LIMIT_REMAINING));
-		searchResetTime = Long.parseLong(connection.getHeaderField(HEADER_RATE_LIMIT_RESET));
+	protected boolean isIncompleteResults(RESTExchange exchange) {
+		return Boolean.TRUE.equals(exchange.getResponse().get("incomplete_results"));
+	}
+
+	/**
+	 * Result pages are numbered by a page parameter, so the following page is the next number
+	 */
+	@Override
+	protected String getFollowingPageUrl(String pageUrl) {
+		Matcher matcher = PAGE_PARAMETER.matcher(pageUrl);
+		if (!matcher.find()) {
+			return null;
+		}
+		return pageUrl.substring(0, matcher.start(2)) + (Long.parseLong(matcher.group(2)) + 1)
+				+ pageUrl.substring(matcher.end(2));
+	}
+	
+	@Override
+	protected RateLimitGovernor getRateLimitGovernor() {
+		return SEARCH_RATE_LIMIT;
+	}
+	
+	@Override
+	protected void setSearchRateLimits(RESTExchange exchange) {
+		updateSearchRateLimits(Long.parseLong(exchange.getResponseHeader(HEADER_RATE_LIMIT_REMAINING)),
+				Long.parseLong(exchange.getResponseHeader(HEADER_RATE_LIMIT_RESET)));
 	}
 	
 	@Override
 	protected void querySearchRateLimits() throws IOException {
-		createConnection(getUrl(RATE_LIMIT), HTTP_GET);
-		JSONObject rateLimits = getResponse(HttpURLConnection.HTTP_OK);
+		JSONObject rateLimits = getResponse(createExchange(getUrl(RATE_LIMIT), HTTP_GET), HttpURLConnection.HTTP_OK);
 		JSONObject resources = (JSONObject) rateLimits.get("resources");
 		JSONObject search = (JSONObject) resources.get("search");
-		remainingSearchRequests = (Long) search.get("remaining");
-		searchResetTime = (Long) search.get("reset");
+		updateSearchRateLimits((Long) search.get("remaining"), (Long) search.get("reset"));
 	}
 	
 	@Override
-	protected void setRequestProperties() {
-		connection.setRequestProperty(HEADER_ACCEPT, API_VERSION);
+	protected void setRequestProperties(RESTExchange exchange) {
+		exchange.setRequestHeader(HEADER_ACCEPT, API_VERSION);
 	}
 }
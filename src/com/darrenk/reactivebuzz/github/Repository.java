@@ -1,8 +1,5 @@
 package com.darrenk.reactivebuzz.github;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.json.simple.JSONObject;
 
 import com.darrenk.reactivebuzz.SearchResult;
@@ -11,55 +8,95 @@ import com.darrenk.reactivebuzz.SearchResult;
  * Represents a subset of the data from a GitHub Repository JSONObject
  * as returned by a REST API query to GitHub.
  */
-public class Repository implements SearchResult {
-	private JSONObject synopsis;
-	private String name;
+public final class Repository implements SearchResult {
+	private final String projectName;
+	private final String name;
+	private final String htmlUrl;
+	private final String description;
+	private final String homepage;
+	private final String pushedAt;
+	// The serialized synopsis once requested
+	private String jsonString;
 
 	/**
 	 * Constructor
 	 * @param result JSONOjbect for a Repository
 	 */
 	public Repository(JSONObject result) {
-		Map<String, String> elements = new HashMap<String,String>();
-		elements.put("project_name", (String) result.get("name"));
-		elements.put("project_full_name", (String) result.get("full_name"));
-		elements.put("github_address", (String) result.get("html_url"));
-		String description = (String) result.get("description");
-		if (description == null) {
-			description = "";
-		}
-		String homepage = (String) result.get("homepage");
-		if (homepage != null) {
-			elements.put("summary", description + " (" + homepage + ")");
-		} else {
-			elements.put("summary", description);
-		}
-		
-		synopsis = new JSONObject(elements);
-		name = (String) result.get("full_name");
+		this((String) result.get("name"), (String) result.get("full_name"), (String) result.get("html_url"),
+				(String) result.get("description"), (String) result.get("homepage"), (String) result.get("pushed_at"));
+	}
+	
+	/**
+	 * Constructor
+	 * @param projectName The repository name
+	 * @param name The full repository name including the owner
+	 * @param htmlUrl The GitHub web page for the repository
+	 * @param description The repository description, may be null
+	 * @param homepage The project home page, may be null
+	 */
+	public Repository(String projectName, String name, String htmlUrl, String description, String homepage) {
+		this(projectName, name, htmlUrl, description, homepage, null);
 	}
 	
+	/**
+	 * Constructor
+	 * @param projectName The repository name
+	 * @param name The full repository name including the owner
+	 * @param htmlUrl The GitHub web page for the repository
+	 * @param description The repository description, may be null
+	 * @param homepage The project home page, may be null
+	 * @param pushedAt The time of the last push as an ISO 8601 UTC timestamp, may be null
+	 */
+	public Repository(String projectName, String name, String htmlUrl, String description, String homepage,
+			String pushedAt) {
+		this.projectName = projectName;
+		this.name = name;
+		this.htmlUrl = htmlUrl;
+		this.description = description;
+		this.homepage = homepage;
+		this.pushedAt = pushedAt;
+	}
+	
+	/**
+	 * Create a JSONObject synopsis of the Repository.
+	 * A new JSONObject is created for each call.
+	 */
+	@SuppressWarnings("unchecked")
 	@Override
 	public JSONObject getJSON() {
+		JSONObject synopsis = new JSONObject();
+		synopsis.put("project_name", projectName);
+		synopsis.put("project_full_name", name);
+		synopsis.put("github_address", htmlUrl);
+		synopsis.put("summary", getSummary());
 		return synopsis;
 	}
 
+	/**
+	 * Get the synopsis serialized to JSON. The serialized JSON is created once.
+	 */
 	@Override
 	public String getJSONString() {
-		return synopsis.toJSONString();
+		String json = jsonString;
+		if (json == null) {
+			json = getJSON().toJSONString();
+			jsonString = json;
+		}
+		return json;
 	}
 
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
 		sb.append("Repository: ");
-		sb.append(synopsis.get("project_full_name"));
+		sb.append(name);
 		sb.append(" (");
-		sb.append(synopsis.get("github_address"));
+		sb.append(htmlUrl);
 		sb.append(")\nProject: ");
-		sb.append(synopsis.get("project_name"));
+		sb.append(projectName);
 		sb.append("\n");
-		sb.append(synopsis.get("summary"));
+		sb.append(getSummary());
 		return sb.toString();
 	}
 	
@@ -67,4 +104,50 @@ public class Repository implements SearchResult {
 	public String getName() {
 		return name;
 	}
+
+	/**
+	 * @return The repository name without the owner
+	 */
+	public String getProjectName() {
+		return projectName;
+	}
+
+	/**
+	 * @return The GitHub web page for the repository
+	 */
+	public String getHtmlUrl() {
+		return htmlUrl;
+	}
+
+	/**
+	 * @return The repository description, may be null
+	 */
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * @return The project home page, may be null
+	 */
+	public String getHomepage() {
+		return homepage;
+	}
+
+	/**
+	 * @return The time of the last push as an ISO 8601 UTC timestamp, may be null
+	 */
+	public String getPushedAt() {
+		return pushedAt;
+	}
+
+	/**
+	 * @return The description followed by the home page in brackets if there is one
+	 */
+	public String getSummary() {
+		String summary = description == null ? "" : description;
+		if (homepage != null) {
+			summary += " (" + homepage + ")";
+		}
+		return summary;
+	}
 }
@@ -0,0 +1,81 @@
+package com.darrenk.reactivebuzz.metrics;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the measurements in memory, a histogram for each distribution and endpoint
+ * and a counter for each counter and endpoint, and reports them as text.
+ */
+public class InMemoryMetricsRegistry implements MetricsRegistry {
+	private static final String TIME_SUFFIX = ".time";
+
+	private final ConcurrentMap<String, Histogram> histograms = new ConcurrentSkipListMap<String, Histogram>();
+	private final ConcurrentMap<String, LongAdder> counters = new ConcurrentSkipListMap<String, LongAdder>();
+
+	@Override
+	public void record(String name, String endpoint, long value) {
+		histograms.computeIfAbsent(key(name, endpoint), k -> new Histogram()).record(value);
+	}
+
+	@Override
+	public void increment(String name, String endpoint, long delta) {
+		counters.computeIfAbsent(key(name, endpoint), k -> new LongAdder()).add(delta);
+	}
+
+	/**
+	 * Get the distribution of a metric for an endpoint
+	 * @param name The metric name
+	 * @param endpoint The REST API endpoint
+	 * @return The histogram or null if nothing has been recorded
+	 */
+	public Histogram getHistogram(String name, String endpoint) {
+		return histograms.get(key(name, endpoint));
+	}
+
+	/**
+	 * Get the value of a counter for an endpoint
+	 * @param name The metric name
+	 * @param endpoint The REST API endpoint
+	 * @return The count, 0 if nothing has been counted
+	 */
+	public long getCount(String name, String endpoint) {
+		LongAdder counter = counters.get(key(name, endpoint));
+		return counter == null ? 0 : counter.sum();
+	}
+
+	/**
+	 * Print every metric, one per line, ordered by name and endpoint. Durations are printed in milliseconds.
+	 * @param out The stream to print to
+	 */
+	public void report(PrintStream out) {
+		for (Map.Entry<String, LongAdder> counter: counters.entrySet()) {
+			out.println(counter.getKey() + " count=" + counter.getValue().sum());
+		}
+		for (Map.Entry<String, Histogram> entry: histograms.entrySet()) {
+			Histogram histogram = entry.getValue();
+			boolean time = entry.getKey().substring(0, entry.getKey().indexOf(' ')).endsWith(TIME_SUFFIX);
+			out.println(entry.getKey() + " count=" + histogram.getCount()
+					+ " mean=" + format(histogram.getMean(), time)
+					+ " p50=" + format(histogram.getPercentile(0.5), time)
+					+ " p95=" + format(histogram.getPercentile(0.95), time)
+					+ " p99=" + format(histogram.getPercentile(0.99), time)
+					+ " max=" + format(histogram.getMax(), time));
+		}
+	}
+
+	private static String key(String name, String endpoint) {
+		return name + ' ' + endpoint;
+	}
+
+	private static String format(double value, boolean time) {
+		if (time) {
+			return String.format("%.3fms", value / TimeUnit.MILLISECONDS.toNanos(1));
+		}
+		return String.valueOf(Math.round(value));
+	}
+}
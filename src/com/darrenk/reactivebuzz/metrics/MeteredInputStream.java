@@ -0,0 +1,58 @@
+package com.darrenk.reactivebuzz.metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read from a stream and the time spent waiting in its read calls.
+ * A stream is read by one thread at a time.
+ */
+public class MeteredInputStream extends FilterInputStream {
+	private long bytes;
+	private long readNanos;
+
+	/**
+	 * Constructor
+	 * @param in The stream to meter
+	 */
+	public MeteredInputStream(InputStream in) {
+		super(in);
+	}
+
+	@Override
+	public int read() throws IOException {
+		long start = System.nanoTime();
+		int b = super.read();
+		readNanos += System.nanoTime() - start;
+		if (b != -1) {
+			bytes++;
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		long start = System.nanoTime();
+		int n = super.read(b, off, len);
+		readNanos += System.nanoTime() - start;
+		if (n > 0) {
+			bytes += n;
+		}
+		return n;
+	}
+
+	/**
+	 * @return The number of bytes read
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return The time spent in read calls in nanoseconds
+	 */
+	public long getReadNanos() {
+		return readNanos;
+	}
+}
@@ -0,0 +1,73 @@
+package com.darrenk.reactivebuzz.metrics;
+
+/**
+ * Receives the measurements made by the REST clients for each REST API endpoint.
+ * An endpoint is the host and path of a request URL without the query, such as
+ * api.github.com/search/repositories. Implementations must be safe to use from many threads
+ * and should be cheap, as they are called on every request.
+ */
+public interface MetricsRegistry {
+	/** Time from sending a request until its response headers are received, including connecting */
+	String HEADERS_TIME = "rest.headers.time";
+	/** Time spent waiting for the response body while it is read */
+	String BODY_TIME = "rest.body.time";
+	/** Time from sending a request until the whole response is received */
+	String RESPONSE_TIME = "rest.response.time";
+	/** Time spent parsing a response and creating its results, excluding waiting for the body */
+	String PARSE_TIME = "rest.parse.time";
+	/** Time spent waiting for the search rate limit to allow a request */
+	String RATE_LIMIT_WAIT_TIME = "rest.ratelimit.wait.time";
+	/** Size of a response body */
+	String RESPONSE_BYTES = "rest.response.bytes";
+	/** Number of search result pages received, including those from the response cache */
+	String PAGES = "rest.pages";
+	/** Number of search result pages the server reported were missing results */
+	String INCOMPLETE_PAGES = "rest.pages.incomplete";
+	/** Number of search result pages used from the response cache without a request */
+	String CACHE_HITS = "rest.cache.hits";
+	/** Number of stale cached search result pages used because the endpoint's circuit breaker is open */
+	String CACHE_STALE_HITS = "rest.cache.stale.hits";
+	/** Number of cached search result pages revalidated by a not modified response */
+	String CACHE_REVALIDATIONS = "rest.cache.revalidations";
+	/** Number of search results kept */
+	String RESULTS_KEPT = "rest.results.kept";
+	/** Number of search results removed by the client's filter */
+	String RESULTS_FILTERED = "rest.results.filtered";
+	/** Number of failed requests */
+	String ERRORS = "rest.errors";
+	/** Number of requests sent again after a failure or an error response */
+	String RETRIES = "rest.retries";
+	/** Number of duplicate requests sent because a response was slow */
+	String HEDGES = "rest.hedges";
+	/** Number of requests not sent because the endpoint's circuit breaker is open */
+	String CIRCUIT_REJECTIONS = "rest.circuit.rejections";
+
+	/**
+	 * A registry that discards every measurement
+	 */
+	MetricsRegistry NOOP = new MetricsRegistry() {
+		@Override
+		public void record(String name, String endpoint, long value) {
+		}
+
+		@Override
+		public void increment(String name, String endpoint, long delta) {
+		}
+	};
+
+	/**
+	 * Record a measurement in a distribution
+	 * @param name The metric name. Names ending in ".time" are durations in nanoseconds.
+	 * @param endpoint The REST API endpoint
+	 * @param value The measurement
+	 */
+	void record(String name, String endpoint, long value);
+
+	/**
+	 * Add to a counter
+	 * @param name The metric name
+	 * @param endpoint The REST API endpoint
+	 * @param delta The amount to add
+	 */
+	void increment(String name, String endpoint, long delta);
+}
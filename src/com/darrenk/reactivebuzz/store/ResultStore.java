@@ -0,0 +1,330 @@
+package com.darrenk.reactivebuzz.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.darrenk.reactivebuzz.SearchResult;
+import com.darrenk.reactivebuzz.github.Repository;
+import com.darrenk.reactivebuzz.twitter.Tweet;
+
+/**
+ * A persistent store of Tweets and GitHub repositories kept between runs.
+ * Results are appended to a memory mapped segment file in a compact binary encoding,
+ * indexed by result name and grouped by a key such as the GitHub project a Tweet was found for.
+ * Records are never rewritten; storing a result again appends a new record that replaces the
+ * old one in the index, unless the stored record is identical.
+ * The index is rebuilt by scanning the segment when the store is opened.
+ * A store can be shared by many threads.
+ */
+public class ResultStore implements Closeable {
+	private static final int MAGIC = 0x52425a31; // "RBZ1"
+	// Magic number followed by the end offset of the committed records
+	private static final int HEADER_SIZE = 4 + 8;
+	private static final int END_OFFSET = 4;
+	private static final int INITIAL_CAPACITY = 1024 * 1024;
+
+	private static final byte TYPE_TWEET = 1;
+	private static final byte TYPE_REPOSITORY = 2;
+
+	private final FileChannel channel;
+	// Guarded by this
+	private MappedByteBuffer segment;
+	private int end;
+	private final Map<String, Integer> index = new HashMap<String, Integer>();
+	private final Map<String, Set<String>> groups = new LinkedHashMap<String, Set<String>>();
+
+	/**
+	 * Open a store, creating the segment file if it does not exist
+	 * @param file The segment file
+	 * @throws IOException If the file cannot be opened or is not a result store
+	 */
+	public ResultStore(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Result store is too large: " + file);
+			}
+			segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_CAPACITY));
+			if (size == 0) {
+				segment.putInt(0, MAGIC);
+				setEnd(HEADER_SIZE);
+			} else if (size < HEADER_SIZE || segment.getInt(0) != MAGIC) {
+				throw new IOException("Not a result store: " + file);
+			} else {
+				end = (int) segment.getLong(END_OFFSET);
+				if (end < HEADER_SIZE || end > size) {
+					throw new IOException("Corrupt result store: " + file);
+				}
+				buildIndex();
+			}
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Store a search result
+	 * @param group The key of the group the result belongs to
+	 * @param result A Tweet or Repository
+	 * @throws IOException
+	 */
+	public synchronized void put(String group, SearchResult result) throws IOException {
+		byte[] record = encode(group, result);
+		Integer offset = index.get(result.getName());
+		if (offset != null && isRecord(offset, record)) {
+			return;
+		}
+		ensureCapacity(4 + record.length);
+		ByteBuffer append = segment.duplicate();
+		append.position(end);
+		append.putInt(record.length).put(record);
+		addToIndex(end, group, result.getName());
+		// Commit the record only once it has been written
+		setEnd(end + 4 + record.length);
+	}
+
+	/**
+	 * Store search results
+	 * @param group The key of the group the results belong to
+	 * @param results Tweets or Repositories
+	 * @throws IOException
+	 */
+	public synchronized void putAll(String group, Iterable<? extends SearchResult> results) throws IOException {
+		for (SearchResult result: results) {
+			put(group, result);
+		}
+	}
+
+	/**
+	 * Get a stored result by name
+	 * @param name The Tweet id or repository full name
+	 * @return The stored result or null if it is not stored
+	 */
+	public synchronized SearchResult get(String name) {
+		Integer offset = index.get(name);
+		return offset == null ? null : decode(offset);
+	}
+
+	/**
+	 * Get the stored results of a group in the order they were first stored
+	 * @param group The group key
+	 * @return The stored results, empty if the group is not stored
+	 */
+	public synchronized List<SearchResult> getGroup(String group) {
+		Set<String> names = groups.get(group);
+		if (names == null) {
+			return Collections.emptyList();
+		}
+		List<SearchResult> results = new ArrayList<SearchResult>(names.size());
+		for (String name: names) {
+			results.add(decode(index.get(name)));
+		}
+		return results;
+	}
+
+	/**
+	 * @return The stored group keys
+	 */
+	public synchronized Set<String> getGroups() {
+		return Collections.unmodifiableSet(new LinkedHashSet<String>(groups.keySet()));
+	}
+
+	/**
+	 * @return The number of stored results
+	 */
+	public synchronized int size() {
+		return index.size();
+	}
+
+	/**
+	 * Write the stored results to disk and close the segment file
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		segment.force();
+		channel.close();
+	}
+
+	/* Scan the committed records of an existing segment
+	 */
+	private void buildIndex() throws IOException {
+		int offset = HEADER_SIZE;
+		while (offset < end) {
+			ByteBuffer record = record(offset);
+			record.get();
+			String group = readString(record);
+			String name = readString(record);
+			addToIndex(offset, group, name);
+			offset += 4 + record.limit();
+		}
+	}
+
+	private void addToIndex(int offset, String group, String name) {
+		index.put(name, offset);
+		Set<String> names = groups.get(group);
+		if (names == null) {
+			names = new LinkedHashSet<String>();
+			groups.put(group, names);
+		}
+		names.add(name);
+	}
+
+	/* Record the end of the committed records in the header
+	 */
+	private void setEnd(int end) {
+		this.end = end;
+		segment.putLong(END_OFFSET, end);
+	}
+
+	/* Grow the mapped segment so that it can hold another record
+	 */
+	private void ensureCapacity(int length) throws IOException {
+		long required = (long) end + length;
+		if (required <= segment.capacity()) {
+			return;
+		}
+		long capacity = segment.capacity();
+		while (capacity < required) {
+			capacity *= 2;
+		}
+		if (capacity > Integer.MAX_VALUE) {
+			if (required > Integer.MAX_VALUE) {
+				throw new IOException("Result store is full");
+			}
+			capacity = Integer.MAX_VALUE;
+		}
+		segment.force();
+		segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+	}
+
+	/* Get a view of the record at an offset, positioned at its type
+	 */
+	private ByteBuffer record(int offset) {
+		int length = segment.getInt(offset);
+		ByteBuffer record = segment.duplicate();
+		record.position(offset + 4).limit(offset + 4 + length);
+		return record.slice();
+	}
+
+	/* True if the record at an offset is identical to an encoded record
+	 */
+	private boolean isRecord(int offset, byte[] encoded) {
+		return record(offset).equals(ByteBuffer.wrap(encoded));
+	}
+
+	/* Encode a result as its type, group and fields
+	 */
+	private static byte[] encode(String group, SearchResult result) {
+		RecordWriter writer = new RecordWriter();
+		if (result instanceof Tweet) {
+			Tweet tweet = (Tweet) result;
+			writer.writeType(TYPE_TWEET);
+			writer.writeString(group);
+			writer.writeString(tweet.getName());
+			writer.writeString(tweet.getText());
+			writer.writeString(tweet.getUserScreenName());
+			writer.writeString(tweet.getCreatedAt());
+		} else if (result instanceof Repository) {
+			Repository repository = (Repository) result;
+			writer.writeType(TYPE_REPOSITORY);
+			writer.writeString(group);
+			writer.writeString(repository.getName());
+			writer.writeString(repository.getProjectName());
+			writer.writeString(repository.getHtmlUrl());
+			writer.writeString(repository.getDescription());
+			writer.writeString(repository.getHomepage());
+			writer.writeString(repository.getPushedAt());
+		} else {
+			throw new IllegalArgumentException("Unsupported search result type: " + result.getClass().getName());
+		}
+		return writer.toByteArray();
+	}
+
+	/* Decode the result stored at an offset
+	 */
+	private SearchResult decode(int offset) {
+		ByteBuffer record = record(offset);
+		byte type = record.get();
+		// Group
+		readString(record);
+		String name = readString(record);
+		switch (type) {
+		case TYPE_TWEET:
+			return new Tweet(name, readString(record), readString(record), readString(record));
+		case TYPE_REPOSITORY:
+			String projectName = readString(record);
+			return new Repository(projectName, name, readString(record), readString(record), readString(record),
+					readString(record));
+		default:
+			throw new IllegalStateException("Unknown result store record type: " + type);
+		}
+	}
+
+	/* Read a length prefixed UTF-8 string, a negative length is null
+	 */
+	private static String readString(ByteBuffer record) {
+		int length = record.getInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		record.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Builds the encoded form of a record
+	 */
+	private static final class RecordWriter {
+		private ByteBuffer buffer = ByteBuffer.allocate(256);
+
+		void writeType(byte type) {
+			ensureRemaining(1);
+			buffer.put(type);
+		}
+
+		void writeString(String s) {
+			if (s == null) {
+				ensureRemaining(4);
+				buffer.putInt(-1);
+				return;
+			}
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			ensureRemaining(4 + bytes.length);
+			buffer.putInt(bytes.length);
+			buffer.put(bytes);
+		}
+
+		byte[] toByteArray() {
+			byte[] bytes = new byte[buffer.position()];
+			buffer.flip();
+			buffer.get(bytes);
+			return bytes;
+		}
+
+		private void ensureRemaining(int length) {
+			if (buffer.remaining() < length) {
+				ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length));
+				buffer.flip();
+				grown.put(buffer);
+				buffer = grown;
+			}
+		}
+	}
+}
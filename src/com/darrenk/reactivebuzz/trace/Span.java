@@ -0,0 +1,130 @@
+package com.darrenk.reactivebuzz.trace;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A timed operation in a trace, nested in a parent span. A span is ended by closing it,
+ * normally with try-with-resources. Spans of a disabled tracer record nothing.
+ */
+public class Span implements AutoCloseable {
+	private final Tracer tracer;
+	private final long id;
+	private final long parentId;
+	private final String name;
+	private final String category;
+	private final long threadId;
+	private final String threadName;
+	private final long startNanos;
+	private final Map<String, Object> tags = new LinkedHashMap<String, Object>();
+	private volatile long endNanos;
+	// The span that was current on the starting thread before this one, restored when this ends
+	private final Span previous;
+	private final boolean current;
+
+	Span(Tracer tracer, long id, Span parent, String name, String category, Span previous, boolean current) {
+		this.tracer = tracer;
+		this.id = id;
+		this.parentId = parent == null ? 0 : parent.id;
+		this.name = name;
+		this.category = category;
+		Thread thread = Thread.currentThread();
+		this.threadId = thread.getId();
+		this.threadName = thread.getName();
+		this.previous = previous;
+		this.current = current;
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Add a value describing the operation, such as a URL or result count
+	 * @param key The name of the value
+	 * @param value The value
+	 * @return This span
+	 */
+	public Span tag(String key, Object value) {
+		if (tracer != null) {
+			synchronized (tags) {
+				tags.put(key, value);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * End the span. Ending a span more than once has no effect.
+	 */
+	@Override
+	public void close() {
+		if (tracer == null || endNanos != 0) {
+			return;
+		}
+		endNanos = System.nanoTime();
+		tracer.end(this);
+	}
+
+	/**
+	 * @return The id of the span, unique in its tracer, or 0 if it is not recorded
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * @return The id of the parent span, or 0 if the span is a root
+	 */
+	public long getParentId() {
+		return parentId;
+	}
+
+	/**
+	 * @return The operation name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The operation category, such as the REST API host
+	 */
+	public String getCategory() {
+		return category;
+	}
+
+	/**
+	 * @return The duration of the span in nanoseconds, or 0 if it has not ended
+	 */
+	public long getDurationNanos() {
+		return endNanos == 0 ? 0 : endNanos - startNanos;
+	}
+
+	/**
+	 * @return A copy of the values describing the operation
+	 */
+	public Map<String, Object> getTags() {
+		synchronized (tags) {
+			return Collections.unmodifiableMap(new LinkedHashMap<String, Object>(tags));
+		}
+	}
+
+	long getStartNanos() {
+		return startNanos;
+	}
+
+	long getThreadId() {
+		return threadId;
+	}
+
+	String getThreadName() {
+		return threadName;
+	}
+
+	Span getPrevious() {
+		return previous;
+	}
+
+	boolean isCurrent() {
+		return current;
+	}
+}
@@ -0,0 +1,202 @@
+package com.darrenk.reactivebuzz.trace;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.simple.JSONObject;
+
+/**
+ * Records nested, timed spans of a run and exports them as a Chrome trace
+ * (the JSON format read by chrome://tracing and Perfetto), giving a timeline per thread.
+ * A span started on a thread is nested in the span current on that thread. Work handed to
+ * another thread names its parent span explicitly. Asynchronous spans are ended on whichever
+ * thread completes them and never become current.
+ * The disabled tracer {@link #NOOP} records nothing and costs next to nothing.
+ */
+public class Tracer {
+	/**
+	 * A tracer that records nothing
+	 */
+	public static final Tracer NOOP = new Tracer(0);
+
+	/**
+	 * The number of spans kept by default. Later spans are dropped.
+	 */
+	public static final int DEFAULT_MAX_SPANS = 100000;
+
+	private static final Span NOOP_SPAN = new Span(null, 0, null, null, null, null, false);
+
+	private final int maxSpans;
+	private final long originNanos = System.nanoTime();
+	private final AtomicLong nextId = new AtomicLong();
+	private final ThreadLocal<Span> current = new ThreadLocal<Span>();
+	private final Queue<Span> ended = new ConcurrentLinkedQueue<Span>();
+	private final AtomicInteger endedCount = new AtomicInteger();
+	private final AtomicInteger dropped = new AtomicInteger();
+
+	/**
+	 * Constructor for a tracer keeping up to {@link #DEFAULT_MAX_SPANS} spans
+	 */
+	public Tracer() {
+		this(DEFAULT_MAX_SPANS);
+	}
+
+	/**
+	 * Constructor
+	 * @param maxSpans The number of spans kept, after which spans are dropped. 0 disables the tracer.
+	 */
+	public Tracer(int maxSpans) {
+		this.maxSpans = maxSpans;
+	}
+
+	/**
+	 * Start a span nested in the current span of this thread and make it current until it ends
+	 * @param name The operation name
+	 * @param category The operation category
+	 * @return The span
+	 */
+	public Span start(String name, String category) {
+		return start(name, category, current());
+	}
+
+	/**
+	 * Start a span nested in a span from another thread and make it current on this thread until it ends
+	 * @param name The operation name
+	 * @param category The operation category
+	 * @param parent The parent span or null to start a root span
+	 * @return The span
+	 */
+	public Span start(String name, String category, Span parent) {
+		if (maxSpans == 0) {
+			return NOOP_SPAN;
+		}
+		Span span = new Span(this, nextId.incrementAndGet(), parent, name, category, current.get(), true);
+		current.set(span);
+		return span;
+	}
+
+	/**
+	 * Start a span nested in the current span of this thread that may be ended on another thread.
+	 * It does not become current.
+	 * @param name The operation name
+	 * @param category The operation category
+	 * @return The span
+	 */
+	public Span startAsync(String name, String category) {
+		if (maxSpans == 0) {
+			return NOOP_SPAN;
+		}
+		return new Span(this, nextId.incrementAndGet(), current(), name, category, null, false);
+	}
+
+	/**
+	 * @return The span current on this thread, or null if there is none
+	 */
+	public Span current() {
+		return maxSpans == 0 ? null : current.get();
+	}
+
+	/**
+	 * @return The spans that have ended, in the order they ended
+	 */
+	public List<Span> getSpans() {
+		return new ArrayList<Span>(ended);
+	}
+
+	/**
+	 * @return The number of spans dropped because the tracer was full
+	 */
+	public int getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * Write the ended spans to a file as a Chrome trace
+	 * @param file The trace file
+	 * @throws IOException
+	 */
+	public void writeChromeTrace(Path file) throws IOException {
+		try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			writeChromeTrace(writer);
+		}
+	}
+
+	/**
+	 * Write the ended spans as a Chrome trace: a complete event for each span,
+	 * timed in microseconds from the creation of the tracer, and the name of each thread
+	 * @param writer Receives the JSON trace
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	public void writeChromeTrace(Writer writer) throws IOException {
+		writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+		Map<Long, String> threads = new LinkedHashMap<Long, String>();
+		boolean first = true;
+		for (Span span: ended) {
+			threads.putIfAbsent(span.getThreadId(), span.getThreadName());
+			JSONObject args = new JSONObject();
+			args.put("id", span.getId());
+			if (span.getParentId() != 0) {
+				args.put("parent", span.getParentId());
+			}
+			for (Map.Entry<String, Object> tag: span.getTags().entrySet()) {
+				args.put(tag.getKey(), tag.getValue() instanceof Number || tag.getValue() instanceof Boolean ?
+						tag.getValue() : String.valueOf(tag.getValue()));
+			}
+			JSONObject event = new JSONObject();
+			event.put("name", span.getName());
+			event.put("cat", span.getCategory());
+			event.put("ph", "X");
+			event.put("ts", (span.getStartNanos() - originNanos) / 1000.0);
+			event.put("dur", span.getDurationNanos() / 1000.0);
+			event.put("pid", 1);
+			event.put("tid", span.getThreadId());
+			event.put("args", args);
+			writer.write(first ? "\n" : ",\n");
+			writer.write(event.toJSONString());
+			first = false;
+		}
+		for (Map.Entry<Long, String> thread: threads.entrySet()) {
+			JSONObject args = new JSONObject();
+			args.put("name", thread.getValue());
+			JSONObject event = new JSONObject();
+			event.put("name", "thread_name");
+			event.put("ph", "M");
+			event.put("pid", 1);
+			event.put("tid", thread.getKey());
+			event.put("args", args);
+			writer.write(first ? "\n" : ",\n");
+			writer.write(event.toJSONString());
+			first = false;
+		}
+		writer.write("\n]}\n");
+	}
+
+	/* Keep an ended span and restore the span that was current before it
+	 */
+	void end(Span span) {
+		if (span.isCurrent() && current.get() == span) {
+			if (span.getPrevious() == null) {
+				current.remove();
+			} else {
+				current.set(span.getPrevious());
+			}
+		}
+		if (endedCount.incrementAndGet() <= maxSpans) {
+			ended.add(span);
+		} else {
+			dropped.incrementAndGet();
+		}
+	}
+}
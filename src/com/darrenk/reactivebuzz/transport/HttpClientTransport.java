@@ -0,0 +1,228 @@
+package com.darrenk.reactivebuzz.transport;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import com.darrenk.reactivebuzz.RESTExchange;
+
+/**
+ * A HTTP transport using the java.net.http client.
+ * Connections are pooled and kept alive between requests, and HTTP/2 is used
+ * where the server supports it so concurrent requests to a host share one connection.
+ * A response must start within the request timeout and its body must then be received
+ * within the read timeout, so a server that stalls part way through a body fails the
+ * request with a HttpTimeoutException rather than holding up the caller.
+ */
+public class HttpClientTransport implements HttpTransport {
+	public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+	public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(30);
+	public static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(30);
+
+	/**
+	 * Headers the HTTP client sets itself and will not accept from a caller
+	 */
+	private static final Set<String> RESTRICTED_HEADERS = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+	static {
+		RESTRICTED_HEADERS.addAll(Arrays.asList("Connection", "Content-Length", "Expect", "Host", "Upgrade"));
+	}
+
+	private final HttpClient httpClient;
+	private final Duration requestTimeout;
+	// Runs the body read deadlines
+	private final Executor readDeadline;
+
+	/**
+	 * Lazily created transport shared by REST clients that are not given one
+	 */
+	private static final class DefaultHolder {
+		static final HttpClientTransport DEFAULT = new HttpClientTransport();
+	}
+
+	/**
+	 * @return The transport shared by REST clients that are not given one
+	 */
+	public static HttpClientTransport getDefault() {
+		return DefaultHolder.DEFAULT;
+	}
+
+	/**
+	 * Constructor using the default timeouts
+	 */
+	public HttpClientTransport() {
+		this(DEFAULT_CONNECT_TIMEOUT, DEFAULT_REQUEST_TIMEOUT);
+	}
+
+	/**
+	 * Constructor using the default read timeout
+	 * @param connectTimeout Maximum time to establish a new connection
+	 * @param requestTimeout Maximum time from sending a request until the response headers are received
+	 */
+	public HttpClientTransport(Duration connectTimeout, Duration requestTimeout) {
+		this(connectTimeout, requestTimeout, DEFAULT_READ_TIMEOUT);
+	}
+
+	/**
+	 * Constructor
+	 * @param connectTimeout Maximum time to establish a new connection
+	 * @param requestTimeout Maximum time from sending a request until the response headers are received
+	 * @param readTimeout Maximum time from receiving the response headers until the whole body is received
+	 */
+	public HttpClientTransport(Duration connectTimeout, Duration requestTimeout, Duration readTimeout) {
+		this.httpClient = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.connectTimeout(connectTimeout)
+				.build();
+		this.requestTimeout = requestTimeout;
+		this.readDeadline = CompletableFuture.delayedExecutor(readTimeout.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public InputStream send(RESTExchange exchange) throws IOException {
+		try {
+			HttpResponse<InputStream> response = httpClient.send(createRequest(exchange),
+					HttpResponse.BodyHandlers.ofInputStream());
+			recordResponse(exchange, response.statusCode(), response.headers());
+			return new DeadlineInputStream(response.body(), exchange.getUrl());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for " + exchange.getUrl());
+		}
+	}
+
+	@Override
+	public CompletableFuture<byte[]> sendAsync(RESTExchange exchange) {
+		CompletableFuture<byte[]> body = new CompletableFuture<byte[]>();
+		CompletableFuture<HttpResponse<byte[]>> response = httpClient.sendAsync(createRequest(exchange), info -> {
+			// The body handler is called once the headers are received
+			readDeadline.execute(() -> body.completeExceptionally(readTimeoutException(exchange.getUrl())));
+			return HttpResponse.BodySubscribers.ofByteArray();
+		});
+		response.whenComplete((received, e) -> {
+			if (e != null) {
+				body.completeExceptionally(e);
+			} else if (!body.isDone()) {
+				recordResponse(exchange, received.statusCode(), received.headers());
+				body.complete(received.body());
+			}
+		});
+		body.whenComplete((received, e) -> {
+			if (e != null) {
+				response.cancel(true);
+			}
+		});
+		return body;
+	}
+
+	/* Build the HTTP request for a REST call
+	 */
+	private HttpRequest createRequest(RESTExchange exchange) {
+		HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(exchange.getUrl()))
+				.timeout(requestTimeout);
+		for (Map.Entry<String, String> header: exchange.getRequestHeaders().entrySet()) {
+			if (!RESTRICTED_HEADERS.contains(header.getKey())) {
+				request.header(header.getKey(), header.getValue());
+			}
+		}
+		request.method(exchange.getMethod(), exchange.getBody() == null ?
+				HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(exchange.getBody()));
+		return request.build();
+	}
+
+	/* The failure of a request whose response body was not received within the read timeout
+	 */
+	private static HttpTimeoutException readTimeoutException(String url) {
+		return new HttpTimeoutException("Timed out reading the response body of " + url);
+	}
+
+	/* Record the response code and headers in the exchange
+	 */
+	private static void recordResponse(RESTExchange exchange, int responseCode, HttpHeaders headers) {
+		exchange.setResponseCode(responseCode);
+		for (Map.Entry<String, List<String>> header: headers.map().entrySet()) {
+			exchange.addResponseHeader(header.getKey(), header.getValue());
+		}
+	}
+
+	/**
+	 * A response body that is closed if it has not been read and closed by the read deadline.
+	 * A read blocked on a stalled server then fails with a HttpTimeoutException.
+	 */
+	private final class DeadlineInputStream extends FilterInputStream {
+		private final String url;
+		private final CompletableFuture<Void> deadline;
+		private volatile boolean timedOut;
+
+		DeadlineInputStream(InputStream body, String url) {
+			super(body);
+			this.url = url;
+			this.deadline = CompletableFuture.runAsync(this::expire, readDeadline);
+		}
+
+		@Override
+		public int read() throws IOException {
+			try {
+				int b = super.read();
+				checkDeadline();
+				return b;
+			} catch (IOException e) {
+				checkDeadline();
+				throw e;
+			}
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			try {
+				int n = super.read(b, off, len);
+				checkDeadline();
+				return n;
+			} catch (IOException e) {
+				checkDeadline();
+				throw e;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			deadline.cancel(false);
+			super.close();
+		}
+
+		/* Close the body so that a blocked read returns
+		 */
+		private void expire() {
+			timedOut = true;
+			try {
+				in.close();
+			} catch (IOException e) {
+				// The read fails with the timeout instead
+			}
+		}
+
+		/* Fail a read that returned because the body was closed at the deadline
+		 */
+		private void checkDeadline() throws HttpTimeoutException {
+			if (timedOut) {
+				throw readTimeoutException(url);
+			}
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package com.darrenk.reactivebuzz.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+
+import com.darrenk.reactivebuzz.RESTExchange;
+
+/**
+ * Sends the HTTP requests for REST API calls.
+ * Implementations must be thread safe as a transport is shared by REST clients.
+ */
+public interface HttpTransport {
+
+	/**
+	 * Send a HTTP request and wait for the response headers.
+	 * The response code and headers are recorded in the exchange.
+	 * @param exchange The REST call to issue
+	 * @return The response body, or the error body for an unsuccessful response. The caller must close it.
+	 * @throws IOException
+	 */
+	public InputStream send(RESTExchange exchange) throws IOException;
+
+	/**
+	 * Send a HTTP request without blocking the calling thread.
+	 * The response code and headers are recorded in the exchange.
+	 * @param exchange The REST call to issue
+	 * @return A future completed with the response body, or the error body for an unsuccessful response
+	 */
+	public CompletableFuture<byte[]> sendAsync(RESTExchange exchange);
+}
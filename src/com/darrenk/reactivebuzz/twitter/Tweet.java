@@ -5,34 +5,121 @@ import org.json.simple.JSONObject;
 import com.darrenk.reactivebuzz.SearchResult;
 
 /**
- * Stores the data from a Twitter Tweet JSONObject
+ * Stores the fields ReactiveBuzz uses from a Twitter Tweet JSONObject
  * as returned by a REST API query to Twitter.
+ * The rest of the Tweet JSON is only retained if the original JSON text is kept.
  */
-public class Tweet implements SearchResult {
-	private JSONObject tweet;
-	private String name;
+public final class Tweet implements SearchResult {
+	private final String name;
+	private final String text;
+	private final String userScreenName;
+	private final String createdAt;
+	// The original JSON text, or the serialized fields once requested
+	private String jsonString;
 
 	/**
 	 * Constructor
-	 * @param result JSONOjbect for a Repository
+	 * @param tweet JSONObject for a Tweet
 	 */
 	public Tweet(JSONObject tweet) {
-		this.tweet = tweet;
-		this.name = (String) tweet.get("id_str");
+		this(tweet, null);
 	}
 	
+	/**
+	 * Constructor keeping the JSON text the Tweet was parsed from
+	 * @param tweet JSONObject for a Tweet
+	 * @param rawJSON The JSON text of the Tweet, returned unchanged by getJSONString(). May be null.
+	 */
+	public Tweet(JSONObject tweet, String rawJSON) {
+		this((String) tweet.get("id_str"), (String) tweet.get("text"),
+				getUserScreenName(tweet), (String) tweet.get("created_at"));
+		this.jsonString = rawJSON;
+	}
+	
+	/**
+	 * Constructor
+	 * @param name The Tweet id
+	 * @param text The Tweet text
+	 * @param userScreenName The screen name of the user who posted the Tweet
+	 * @param createdAt The time the Tweet was created as formatted by Twitter
+	 */
+	public Tweet(String name, String text, String userScreenName, String createdAt) {
+		this.name = name;
+		this.text = text;
+		this.userScreenName = userScreenName;
+		this.createdAt = createdAt;
+	}
+	
+	/* Get the user screen name from a Tweet JSONObject
+	 */
+	private static String getUserScreenName(JSONObject tweet) {
+		JSONObject user = (JSONObject) tweet.get("user");
+		return user == null ? null : (String) user.get("screen_name");
+	}
+	
+	/**
+	 * Create a JSONObject holding the retained Tweet fields.
+	 * A new JSONObject is created for each call.
+	 */
+	@SuppressWarnings("unchecked")
 	@Override
 	public JSONObject getJSON() {
-		return tweet;
+		JSONObject json = new JSONObject();
+		putIfNotNull(json, "id_str", name);
+		putIfNotNull(json, "text", text);
+		putIfNotNull(json, "created_at", createdAt);
+		if (userScreenName != null) {
+			JSONObject user = new JSONObject();
+			user.put("screen_name", userScreenName);
+			json.put("user", user);
+		}
+		return json;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static void putIfNotNull(JSONObject json, String key, String value) {
+		if (value != null) {
+			json.put(key, value);
+		}
 	}
 
+	/**
+	 * Get the original JSON text of the Tweet if it was kept, otherwise the retained Tweet fields
+	 * serialized to JSON. The serialized JSON is created once.
+	 */
 	@Override
 	public String getJSONString() {
-		return tweet.toJSONString();
+		String json = jsonString;
+		if (json == null) {
+			json = getJSON().toJSONString();
+			jsonString = json;
+		}
+		return json;
 	}
 	
 	@Override
 	public String getName() {
 		return name;
 	}
+
+	/**
+	 * @return The Tweet text
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * @return The screen name of the user who posted the Tweet
+	 */
+	public String getUserScreenName() {
+		return userScreenName;
+	}
+
+	/**
+	 * @return The time the Tweet was created as formatted by Twitter
+	 */
+	public String getCreatedAt() {
+		return createdAt;
+	}
 }
@@ -2,28 +2,52 @@ package com.darrenk.reactivebuzz.twitter;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.json.simple.JSONObject;
 
 import com.darrenk.reactivebuzz.AbstractRESTClient;
 import com.darrenk.reactivebuzz.EncryptUtils;
+import com.darrenk.reactivebuzz.RateLimitGovernor;
+import com.darrenk.reactivebuzz.RESTExchange;
 import com.darrenk.reactivebuzz.SearchResult;
 import com.darrenk.reactivebuzz.SearchResults;
+import com.darrenk.reactivebuzz.transport.HttpClientTransport;
+import com.darrenk.reactivebuzz.transport.HttpTransport;
 
 /**
  * A REST API client to query for Twitter Tweets
  */
 public class TwitterRESTClient extends AbstractRESTClient {
+	/**
+	 * The maximum length of a search query including operators
+	 * @see https://dev.twitter.com/rest/reference/get/search/tweets
+	 */
+	public static final int MAX_QUERY_LENGTH = 500;
+	private static final String OR_OPERATOR = " OR ";
+
 	private static final String BASE_API_URL = "https://api.twitter.com/1.1/";
 	private static final int MAX_SEARCH_PAGE_SIZE = 100;
 	private static final String SEARCH_TWEETS_API = "search/tweets.json";
 	private static final String SEARCH_RECENT_TWEETS =
 			SEARCH_TWEETS_API + "?result_type=recent&count=" + MAX_SEARCH_PAGE_SIZE + "&q=";
+	private static final String SEARCH_NEW_TWEETS =
+			SEARCH_TWEETS_API + "?result_type=recent&count=" + MAX_SEARCH_PAGE_SIZE + "&since_id=";
+	// Stops a poll following a stale watermark back through the whole search index
+	private static final int MAX_POLL_PAGES = 10;
+	private static final Pattern QUERY_PARAM = Pattern.compile("[?&]q=([^&]*)");
+	private static final Pattern SINCE_ID_PARAM = Pattern.compile("[?&]since_id=(\\d+)");
 
 	/* OAUTH2 */
-	private static final String BASE_OAUTH2_API_URL = "https://api.twitter.com/";
-	private static final String OAUTH2_TOKEN = "oauth2/token";
+	private static final String OAUTH2_TOKEN_URL = "https://api.twitter.com/oauth2/token";
 	private static final String OAUTH2_TOKEN_REQ_BODY = "grant_type=client_credentials";
+	private static final String OAUTH2_TOKEN_REQ_CONTENT_TYPE = "application/x-www-form-urlencoded;charset=UTF-8";
 	private static final String OAUTH2_TOKEN_TYPE_VALUE = "Bearer";
 	
 	/**
@@ -32,19 +56,61 @@ public class TwitterRESTClient extends AbstractRESTClient {
 	private static final String HEADER_RATE_LIMIT_REMAINING = "X-Rate-Limit-Remaining";
 	private static final String HEADER_RATE_LIMIT_RESET = "X-Rate-Limit-Reset";
 	private static final String RATE_LIMIT = "application/rate_limit_status.json?resources=search";
+	private static final RateLimitGovernor SEARCH_RATE_LIMIT = RateLimitGovernor.forApi("api.twitter.com/search/tweets");
+	
+	// The highest Tweet id seen for each query
+	private final ConcurrentMap<String, Long> sinceIds = new ConcurrentHashMap<String, Long>();
+	// The bearer token Authorization header value, fetched by the first request
+	private volatile String bearerToken;
+	private final Object bearerTokenLock = new Object();
+	
+	/**
+	 * Constructor to use for authenticated REST calls
+	 * for Twitter OAUTH2 authentication and authorization.
+	 * The bearer token is requested with the first REST call.
+	 * @param key Consumer key
+	 * @param token Consumer secret
+	 */
+	public TwitterRESTClient(String key, String secret) {
+		this(key, secret, HttpClientTransport.getDefault());
+	}
 	
 	/**
 	 * Constructor to use for authenticated REST calls
 	 * for Twitter OAUTH2 authentication and authorization.
+	 * The bearer token is requested with the first REST call, so the request uses the circuit breakers,
+	 * retries and metrics the client is configured with.
 	 * @param key Consumer key
 	 * @param token Consumer secret
+	 * @param transport The HTTP transport used to send requests
+	 */
+	public TwitterRESTClient(String key, String secret, HttpTransport transport) {
+		super(key, secret, BASE_API_URL, transport);
+	}
+	
+	/**
+	 * Send REST calls with the bearer token, requesting it first if it has not been requested yet.
+	 * The token request itself is sent with the consumer key and secret. A non-blocking call that
+	 * requests the token waits for it on the calling thread.
 	 */
-	public TwitterRESTClient(String key, String secret) throws IOException {
-		super(key, secret, BASE_OAUTH2_API_URL);
-		createConnection(getUrl(OAUTH2_TOKEN), HTTP_POST);
-		setOAuthRequest();
-		setBearerToken(getResponse(200));
-		setBaseApiUrl(BASE_API_URL);
+	@Override
+	protected String getAuthorization(RESTExchange exchange) throws IOException {
+		if (exchange.getUrl().equals(OAUTH2_TOKEN_URL)) {
+			return null;
+		}
+		String token = bearerToken;
+		if (token == null) {
+			synchronized (bearerTokenLock) {
+				token = bearerToken;
+				if (token == null) {
+					RESTExchange tokenExchange = createExchange(OAUTH2_TOKEN_URL, HTTP_POST);
+					setOAuthRequest(tokenExchange);
+					token = getBearerToken(getResponse(tokenExchange, HttpURLConnection.HTTP_OK));
+					bearerToken = token;
+				}
+			}
+		}
+		return token;
 	}
 	
 	@Override
@@ -64,6 +130,11 @@ public class TwitterRESTClient extends AbstractRESTClient {
 		return new Tweet(result);
 	}
 	
+	@Override
+	protected SearchResult createResult(JSONObject result, String rawJSON) {
+		return new Tweet(result, rawJSON);
+	}
+	
 	/**
 	 * Query for Twitter Tweets
 	 * @param query The query parameter
@@ -73,6 +144,80 @@ public class TwitterRESTClient extends AbstractRESTClient {
 	public SearchResults searchTweets(String query) throws IOException {
 		return search(SEARCH_RECENT_TWEETS, query);
 	}
+	
+	/**
+	 * Combine queries into one query that matches the Tweets matched by any of them
+	 * @param queries The queries
+	 * @return The combined query, or the query itself if there is only one
+	 */
+	public static String orQuery(List<String> queries) {
+		if (queries.size() == 1) {
+			return queries.get(0);
+		}
+		StringBuilder query = new StringBuilder();
+		for (String q: queries) {
+			if (query.length() > 0) {
+				query.append(OR_OPERATOR);
+			}
+			query.append('(').append(q).append(')');
+		}
+		return query.toString();
+	}
+	
+	/**
+	 * Query for Tweets posted since the highest Tweet id seen for the query and add them to a result set.
+	 * Every page of new Tweets is requested, up to a limit. If no Tweets have been seen for the query
+	 * only the first page of recent Tweets is requested.
+	 * @param query The query parameter
+	 * @param results The existing result set. New Tweets are appended to it.
+	 * @return True if new Tweets were added
+	 * @throws IOException
+	 */
+	public boolean pollNewTweets(String query, SearchResults results) throws IOException {
+		Long sinceId = sinceIds.get(query);
+		if (sinceId == null) {
+			return results.merge(searchTweets(query));
+		}
+		return pollNewTweets(query, sinceId, results);
+	}
+	
+	/**
+	 * Query for Tweets posted after a Tweet id and add them to a result set, whatever the highest
+	 * Tweet id seen for the query is. A combined query can then poll from the lowest id seen by the
+	 * queries it combines, however they were combined before.
+	 * Every page of new Tweets is requested, up to a limit.
+	 * @param query The query parameter
+	 * @param sinceId The Tweet id
+	 * @param results The existing result set. New Tweets are appended to it.
+	 * @return True if new Tweets were added
+	 * @throws IOException
+	 */
+	public boolean pollNewTweets(String query, long sinceId, SearchResults results) throws IOException {
+		SearchResults newTweets = search(SEARCH_NEW_TWEETS + sinceId + "&q=", query);
+		for (int page = 1; page < MAX_POLL_PAGES && newTweets.hasNextPage(); page++) {
+			getNextSearchResults(newTweets);
+		}
+		return results.merge(newTweets);
+	}
+	
+	/**
+	 * Get the highest Tweet id seen by searches for a query
+	 * @param query The query parameter
+	 * @return The highest Tweet id or null if no Tweets have been seen
+	 */
+	public Long getSinceId(String query) {
+		return sinceIds.get(query);
+	}
+	
+	/**
+	 * Set the Tweet id that polls for a query return Tweets after, such as one kept from an earlier run.
+	 * The id only replaces a lower id that has been seen.
+	 * @param query The query parameter
+	 * @param sinceId The Tweet id
+	 */
+	public void setSinceId(String query, long sinceId) {
+		sinceIds.merge(query, sinceId, Math::max);
+	}
 
 	@Override
 	protected boolean filterResult(JSONObject result) {
@@ -80,57 +225,89 @@ public class TwitterRESTClient extends AbstractRESTClient {
 	}
 	
 	@Override
-	protected String getNextPageUrl(JSONObject queryResults)
+	protected String getNextPageUrl(RESTExchange exchange)
 	{
 		String nextPageUrl = null;
-		JSONObject searchMetadata = (JSONObject) queryResults.get("search_metadata");
+		JSONObject searchMetadata = (JSONObject) exchange.getResponse().get("search_metadata");
 		if (searchMetadata.containsKey("next_results")) {
-			nextPageUrl = SEARCH_TWEETS_API + searchMetadata.get("next_results");
+			nextPageUrl = getUrl(SEARCH_TWEETS_API) + searchMetadata.get("next_results");
+			// Keep a poll for new Tweets from paging back past the Tweets already seen
+			Matcher sinceId = SINCE_ID_PARAM.matcher(exchange.getUrl());
+			if (sinceId.find() && !SINCE_ID_PARAM.matcher(nextPageUrl).find()) {
+				nextPageUrl += "&since_id=" + sinceId.group(1);
+			}
 		}
 		
 		return nextPageUrl;
 	}
 	
+	/**
+	 * Advance the since_id watermark of the query to the highest Tweet id in the response
+	 */
+	@Override
+	protected void readSearchMetadata(RESTExchange exchange) {
+		JSONObject searchMetadata = (JSONObject) exchange.getResponse().get("search_metadata");
+		Matcher query = QUERY_PARAM.matcher(exchange.getUrl());
+		if (searchMetadata == null || !query.find()) {
+			return;
+		}
+		Object maxId = searchMetadata.get("max_id_str");
+		if (maxId == null) {
+			maxId = searchMetadata.get("max_id");
+		}
+		if (maxId != null) {
+			long id = Long.parseLong(maxId.toString());
+			if (id > 0) {
+				setSinceId(URLDecoder.decode(query.group(1), StandardCharsets.UTF_8), id);
+			}
+		}
+	}
+	
 	/**
 	 * This registered application can use a bearer token for application-only authentication
-	 * @param bearerToken
+	 * @param bearerJSONToken The token response
+	 * @return The Authorization header value
 	 */
-	private void setBearerToken(JSONObject bearerJSONToken) {
+	private static String getBearerToken(JSONObject bearerJSONToken) {
 		String tokenType = (String) bearerJSONToken.get("token_type");
 		if (tokenType.compareToIgnoreCase(OAUTH2_TOKEN_TYPE_VALUE) != 0) {
 			// This is unrecoverable and may be a security problem
 			// or the REST API has changed.
 			throw new RuntimeException("Unexpected Twitter OAUTH2 token type value: " + tokenType);
 		}
-		setAuthHeaderValue(OAUTH2_TOKEN_TYPE_VALUE + " " + (String) bearerJSONToken.get("access_token"));
+		return OAUTH2_TOKEN_TYPE_VALUE + " " + (String) bearerJSONToken.get("access_token");
 	}
 
 	/*
 	 *  Set the body text for an OAUTH2 token request
 	 */
-	private void setOAuthRequest() throws IOException {
-		setBody(OAUTH2_TOKEN_REQ_BODY);
+	private void setOAuthRequest(RESTExchange exchange) {
+		exchange.setRequestHeader(HEADER_CONTENT_TYPE, OAUTH2_TOKEN_REQ_CONTENT_TYPE);
+		exchange.setBody(OAUTH2_TOKEN_REQ_BODY);
+	}
+
+	@Override
+	protected RateLimitGovernor getRateLimitGovernor() {
+		return SEARCH_RATE_LIMIT;
 	}
 
 	@Override
-	protected void setSearchRateLimits() {
-		remainingSearchRequests = Long.parseLong(connection.getHeaderField(HEADER_RATE_LIMIT_REMAINING));
-		searchResetTime = Long.parseLong(connection.getHeaderField(HEADER_RATE_LIMIT_RESET));
+	protected void setSearchRateLimits(RESTExchange exchange) {
+		updateSearchRateLimits(Long.parseLong(exchange.getResponseHeader(HEADER_RATE_LIMIT_REMAINING)),
+				Long.parseLong(exchange.getResponseHeader(HEADER_RATE_LIMIT_RESET)));
 	}
 	
 	@Override
 	protected void querySearchRateLimits() throws IOException {
-		createConnection(getUrl(RATE_LIMIT), HTTP_GET);
-		JSONObject rateLimits = getResponse(HttpURLConnection.HTTP_OK);
+		JSONObject rateLimits = getResponse(createExchange(getUrl(RATE_LIMIT), HTTP_GET), HttpURLConnection.HTTP_OK);
 		JSONObject resources = (JSONObject) rateLimits.get("resources");
 		JSONObject search = (JSONObject) resources.get("search");
 		JSONObject searchTweets = (JSONObject) search.get("/search/tweets");
-		this.remainingSearchRequests = (Long) searchTweets.get("remaining");
-		this.searchResetTime = (Long) searchTweets.get("reset");
+		updateSearchRateLimits((Long) searchTweets.get("remaining"), (Long) searchTweets.get("reset"));
 	}
 	
 	@Override
-	protected void setRequestProperties() {
-		connection.setRequestProperty("Host", "api.twitter.com");
+	protected void setRequestProperties(RESTExchange exchange) {
+		exchange.setRequestHeader("Host", "api.twitter.com");
 	}
 }
@@ -3,13 +3,23 @@ package com.darrenk.reactivebuzz;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.darrenk.reactivebuzz.exception.CircuitOpenException;
 import com.darrenk.reactivebuzz.exception.SearchException;
 import com.darrenk.reactivebuzz.github.RepositoryTest;
+import com.darrenk.reactivebuzz.metrics.InMemoryMetricsRegistry;
+import com.darrenk.reactivebuzz.metrics.MetricsRegistry;
 
 public class AbstractRESTClientTest {
 
@@ -41,7 +51,7 @@ public class AbstractRESTClientTest {
 			SearchResults s = cli.search("search/search", "find me");
 			assertEquals("Number of results", 5, s.size()); 
 
-			((URLConnectionStub) cli.connection).setReponseCode(400);
+			cli.getTransport().setResponseCode(400);
 			try {
 				s = cli.search("search/search", "find me");
 				fail("Expected SearchException");
@@ -71,6 +81,228 @@ public class AbstractRESTClientTest {
 		}
 	}
 
+	@Test
+	public void testSearchAsync() throws Exception {
+		SearchResults s = cli.searchAsync("search/search", "find me").get();
+		assertEquals("Number of results", 5, s.size());
+		assertTrue("Found more results", cli.getNextSearchResultsAsync(s).get());
+		assertEquals("Number of results", 10, s.size());
+
+		cli.getTransport().setResponseCode(400);
+		try {
+			cli.searchAsync("search/search", "find me").get();
+			fail("Expected SearchException");
+		} catch (ExecutionException e) {
+			assertTrue("SearchException cause", e.getCause() instanceof SearchException);
+		}
+	}
+
+	@Test
+	public void testPublish() throws Exception {
+		final List<SearchResult> received = new ArrayList<SearchResult>();
+		final CompletableFuture<Void> complete = new CompletableFuture<Void>();
+		cli.publish("search/search", "find me").subscribe(new Flow.Subscriber<SearchResult>() {
+			private Flow.Subscription subscription;
+
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				this.subscription = subscription;
+				subscription.request(3);
+			}
+
+			@Override
+			public void onNext(SearchResult item) {
+				received.add(item);
+				if (received.size() == 8) {
+					cli.setHasNextPage(false);
+				}
+				subscription.request(1);
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				complete.completeExceptionally(throwable);
+			}
+
+			@Override
+			public void onComplete() {
+				complete.complete(null);
+			}
+		});
+		complete.get(5, TimeUnit.SECONDS);
+		// The third page was requested after the 8th result was received and has no next page
+		assertEquals("Number of results", 15, received.size());
+	}
+
+	@Test
+	public void testMetrics() throws Exception {
+		InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+		cli.setMetricsRegistry(metrics);
+		String endpoint = "efgsearch/searchfind+me";
+		cli.search("search/search", "find me");
+		cli.setSkipNResults(2);
+		cli.search("search/search", "find me");
+		cli.searchAsync("search/search", "find me").get();
+		assertEquals("Pages", 3, metrics.getCount(MetricsRegistry.PAGES, endpoint));
+		assertEquals("Kept", 13, metrics.getCount(MetricsRegistry.RESULTS_KEPT, endpoint));
+		assertEquals("Filtered", 2, metrics.getCount(MetricsRegistry.RESULTS_FILTERED, endpoint));
+		assertEquals("Header times", 2, metrics.getHistogram(MetricsRegistry.HEADERS_TIME, endpoint).getCount());
+		assertEquals("Response times", 3, metrics.getHistogram(MetricsRegistry.RESPONSE_TIME, endpoint).getCount());
+		assertEquals("Response size", jsonResults.length(),
+				metrics.getHistogram(MetricsRegistry.RESPONSE_BYTES, endpoint).getMax());
+		assertEquals("Rate limit waits", 3,
+				metrics.getHistogram(MetricsRegistry.RATE_LIMIT_WAIT_TIME, endpoint).getCount());
+
+		cli.getTransport().setResponseCode(400);
+		try {
+			cli.search("search/search", "find me");
+			fail("Expected SearchException");
+		} catch (SearchException e) {
+			// Ok!
+		}
+		assertEquals("Errors", 1, metrics.getCount(MetricsRegistry.ERRORS, endpoint));
+	}
+
+	@Test
+	public void testRetry() throws Exception {
+		InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+		cli.setMetricsRegistry(metrics);
+		cli.setRetryPolicy(new RetryPolicy(2, Duration.ofMillis(1), Duration.ofMillis(10)));
+		String endpoint = "efgsearch/searchfind+me";
+		cli.getTransport().setTransientFailures(2);
+		assertEquals("Number of results", 5, cli.search("search/search", "find me").size());
+		cli.getTransport().setTransientFailures(2);
+		assertEquals("Number of async results", 5, cli.searchAsync("search/search", "find me").get().size());
+		assertEquals("Retries", 4, metrics.getCount(MetricsRegistry.RETRIES, endpoint));
+
+		cli.getTransport().setTransientFailures(3);
+		try {
+			cli.search("search/search", "find me");
+			fail("Expected SearchException");
+		} catch (SearchException e) {
+			// Ok!
+		}
+		assertEquals("Retries exhausted", 6, metrics.getCount(MetricsRegistry.RETRIES, endpoint));
+		assertEquals("Requests", 9, cli.getTransport().getRequestCount());
+	}
+
+	@Test
+	public void testRetryTakesRateLimitPermit() throws Exception {
+		cli.setRetryPolicy(new RetryPolicy(2, Duration.ofMillis(1), Duration.ofMillis(10)));
+		RateLimitGovernor governor = cli.getRateLimitGovernor();
+		governor.update(4, System.currentTimeMillis() / 1000 + 60);
+		cli.getTransport().setTransientFailures(1);
+		cli.search("search/search", "find me");
+		assertEquals("Permits for the request and its retry", 2, governor.getRemaining());
+		cli.getTransport().setTransientFailures(1);
+		cli.searchAsync("search/search", "find me").get();
+		assertEquals("Permits for the async request and its retry", 0, governor.getRemaining());
+	}
+
+	@Test
+	public void testRateLimitedWithoutRetryAfterNotRetried() throws Exception {
+		cli.setRetryPolicy(new RetryPolicy(2, Duration.ofMillis(1), Duration.ofMillis(10)));
+		cli.getTransport().setResponseCode(429);
+		try {
+			cli.search("search/search", "find me");
+			fail("Expected SearchException");
+		} catch (SearchException e) {
+			// Ok!
+		}
+		assertEquals("Not retried", 1, cli.getTransport().getRequestCount());
+	}
+
+	@Test
+	public void testHedging() throws Exception {
+		List<CompletableFuture<byte[]>> stalled = new ArrayList<CompletableFuture<byte[]>>();
+		TransportStub transport = new TransportStub() {
+			@Override
+			public CompletableFuture<byte[]> sendAsync(RESTExchange exchange) {
+				if (getRequestCount() == 30 && stalled.isEmpty()) {
+					stalled.add(new CompletableFuture<byte[]>());
+					return stalled.get(0);
+				}
+				return super.sendAsync(exchange);
+			}
+		};
+		RESTClientStub hedged = new RESTClientStub("efg", transport);
+		InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+		hedged.setMetricsRegistry(metrics);
+		RetryPolicy policy = new RetryPolicy();
+		policy.setHedging(true);
+		hedged.setRetryPolicy(policy);
+		for (int i = 0; i < 30; i++) {
+			hedged.search("search/search", "find me");
+		}
+		assertEquals("Not hedged", 0, metrics.getCount(MetricsRegistry.HEDGES, "efgsearch/searchfind+me"));
+		assertEquals("Stalled request answered by the hedge", 5, hedged.search("search/search", "find me").size());
+		assertEquals("Hedged", 1, metrics.getCount(MetricsRegistry.HEDGES, "efgsearch/searchfind+me"));
+		assertFalse("Stalled request still outstanding", stalled.get(0).isDone());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testNoRetryPolicyImmutable() {
+		RetryPolicy.NONE.setHedging(true);
+	}
+
+	@Test
+	public void testCircuitBreaker() throws Exception {
+		InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+		cli.setMetricsRegistry(metrics);
+		cli.setCircuitBreaking(true);
+		cli.setResponseCache(new SearchResponseCache(1024 * 1024), 0);
+		cli.search("search/search", "find me");
+		cli.getTransport().setResponseCode(503);
+		for (int i = 0; i < 3; i++) {
+			try {
+				cli.search("search/search", "other");
+				fail("Expected SearchException");
+			} catch (SearchException e) {
+				// Ok!
+			}
+		}
+		int requests = cli.getTransport().getRequestCount();
+		try {
+			cli.search("search/search", "other");
+			fail("Expected CircuitOpenException");
+		} catch (CircuitOpenException e) {
+			// Ok!
+		}
+		try {
+			cli.searchAsync("search/search", "other").get();
+			fail("Expected CircuitOpenException");
+		} catch (ExecutionException e) {
+			assertTrue("Async open", e.getCause() instanceof CircuitOpenException);
+		}
+		assertEquals("Stale cached results", 5, cli.search("search/search", "find me").size());
+		assertEquals("Stale cached async results", 5, cli.searchAsync("search/search", "find me").get().size());
+		assertEquals("No requests while open", requests, cli.getTransport().getRequestCount());
+		assertEquals("Rejections", 2, metrics.getCount(MetricsRegistry.CIRCUIT_REJECTIONS, "efgsearch/searchother"));
+		assertEquals("Stale hits", 2, metrics.getCount(MetricsRegistry.CACHE_STALE_HITS, "efgsearch/searchfind+me"));
+
+		cli.getTransport().setResponseCode(200);
+		Thread.sleep(250);
+		assertEquals("Trial", 5, cli.search("search/search", "other").size());
+		assertEquals("Closed", 5, cli.searchAsync("search/search", "other").get().size());
+	}
+
+	@Test
+	public void testRateLimitedNotCircuitFailure() throws Exception {
+		cli.setCircuitBreaking(true);
+		cli.getTransport().setResponseCode(429);
+		for (int i = 0; i < 5; i++) {
+			try {
+				cli.search("search/search", "other");
+				fail("Expected SearchException");
+			} catch (CircuitOpenException e) {
+				fail("Rate limited responses are not failures");
+			} catch (SearchException e) {
+				// Ok!
+			}
+		}
+		assertEquals("Every request sent", 5, cli.getTransport().getRequestCount());
+	}
+
 	@Test
 	public void testFilterResult() {
 		try {
@@ -4,14 +4,34 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
+import com.darrenk.reactivebuzz.github.GitHubRESTClientTest;
 import com.darrenk.reactivebuzz.github.RepositoryTest;
+import com.darrenk.reactivebuzz.metrics.InMemoryMetricsRegistryTest;
+import com.darrenk.reactivebuzz.mock.MockApiServerTest;
+import com.darrenk.reactivebuzz.store.ResultStoreTest;
+import com.darrenk.reactivebuzz.trace.TracerTest;
+import com.darrenk.reactivebuzz.transport.HttpClientTransportTest;
 import com.darrenk.reactivebuzz.twitter.TweetTest;
+import com.darrenk.reactivebuzz.twitter.TwitterRESTClientTest;
 
 @RunWith(Suite.class)
 @SuiteClasses({
 	AbstractRESTClientTest.class,
+	BuzzDaemonTest.class,
+	CircuitBreakerTest.class,
+	ConcurrentSearchTest.class,
 	SearchResultsTest.class,
+	SearchResponseParserTest.class,
+	RateLimitGovernorTest.class,
+	SearchResponseCacheTest.class,
+	GitHubRESTClientTest.class,
+	HttpClientTransportTest.class,
+	InMemoryMetricsRegistryTest.class,
+	MockApiServerTest.class,
 	RepositoryTest.class,
-	TweetTest.class})
+	ResultStoreTest.class,
+	TracerTest.class,
+	TweetTest.class,
+	TwitterRESTClientTest.class})
 
 public class AllTests {}
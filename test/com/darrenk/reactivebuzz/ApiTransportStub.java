@@ -0,0 +1,158 @@
+package com.darrenk.reactivebuzz;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.darrenk.reactivebuzz.transport.HttpTransport;
+
+/**
+ * Answers GitHub repository searches, the Twitter OAuth2 token request and Twitter searches
+ * with one page of the repositories and Tweets set, recording the queries received
+ */
+public class ApiTransportStub implements HttpTransport {
+	private volatile String[] repositories = new String[0];
+	private volatile String[] pushedAt = new String[0];
+	private volatile long[] tweetIds = new long[0];
+	private volatile String[] tweetTexts = new String[0];
+	private final List<String> githubQueries = Collections.synchronizedList(new ArrayList<String>());
+	private final List<String> twitterQueries = Collections.synchronizedList(new ArrayList<String>());
+	private final List<String> sinceIds = Collections.synchronizedList(new ArrayList<String>());
+
+	@Override
+	public InputStream send(RESTExchange exchange) throws IOException {
+		return new ByteArrayInputStream(getBody(exchange));
+	}
+
+	@Override
+	public CompletableFuture<byte[]> sendAsync(RESTExchange exchange) {
+		return CompletableFuture.completedFuture(getBody(exchange));
+	}
+
+	/**
+	 * Set the repositories found by every GitHub search
+	 * @param repositories The repository full names
+	 */
+	public void setRepositories(String... repositories) {
+		this.repositories = repositories;
+		this.pushedAt = new String[0];
+	}
+
+	/**
+	 * Set the push times of the repositories, in the same order
+	 * @param pushedAt ISO 8601 UTC timestamps
+	 */
+	public void setPushedAt(String... pushedAt) {
+		this.pushedAt = pushedAt;
+	}
+
+	/**
+	 * Set the Tweets found by every Twitter search, with ids from 1
+	 * @param texts The Tweet texts
+	 */
+	public void setTweets(String... texts) {
+		long[] ids = new long[texts.length];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = i + 1;
+		}
+		this.tweetIds = ids;
+		this.tweetTexts = texts;
+	}
+
+	/**
+	 * Set the Tweets found by every Twitter search, without text
+	 * @param ids The Tweet ids
+	 */
+	public void setTweetIds(long... ids) {
+		this.tweetIds = ids;
+		this.tweetTexts = new String[0];
+	}
+
+	/**
+	 * @return The decoded q parameter of each GitHub search, in the order received
+	 */
+	public List<String> getGithubQueries() {
+		return githubQueries;
+	}
+
+	/**
+	 * @return The decoded q parameter of each Twitter search, in the order received
+	 */
+	public List<String> getTwitterQueries() {
+		return twitterQueries;
+	}
+
+	/**
+	 * @return The since_id parameter of each Twitter search, or null for those without one
+	 */
+	public List<String> getSinceIds() {
+		return sinceIds;
+	}
+
+	/* Return the JSON for the request URL
+	 */
+	private byte[] getBody(RESTExchange exchange) {
+		exchange.setResponseCode(HttpURLConnection.HTTP_OK);
+		String url = exchange.getUrl();
+		StringBuilder body = new StringBuilder();
+		if (url.endsWith("oauth2/token")) {
+			body.append("{\"token_type\":\"bearer\",\"access_token\":\"token\"}");
+		} else if (url.contains("api.github.com")) {
+			githubQueries.add(getParameter(url, "q"));
+			exchange.addResponseHeader("X-RateLimit-Remaining", Collections.singletonList("30"));
+			exchange.addResponseHeader("X-RateLimit-Reset", Collections.singletonList("0"));
+			String[] names = repositories;
+			String[] pushed = pushedAt;
+			body.append("{\"items\":[");
+			for (int i = 0; i < names.length; i++) {
+				body.append(i > 0 ? "," : "").append("{\"full_name\":\"").append(names[i]).append('"');
+				if (i < pushed.length) {
+					body.append(",\"pushed_at\":\"").append(pushed[i]).append('"');
+				}
+				body.append('}');
+			}
+			body.append("]}");
+		} else {
+			twitterQueries.add(getParameter(url, "q"));
+			sinceIds.add(getParameter(url, "since_id"));
+			exchange.addResponseHeader("X-Rate-Limit-Remaining", Collections.singletonList("100"));
+			exchange.addResponseHeader("X-Rate-Limit-Reset", Collections.singletonList("0"));
+			long[] ids = tweetIds;
+			String[] texts = tweetTexts;
+			body.append("{\"statuses\":[");
+			long maxId = 0;
+			for (int i = 0; i < ids.length; i++) {
+				body.append(i > 0 ? "," : "").append("{\"id_str\":\"").append(ids[i]).append('"');
+				if (i < texts.length) {
+					body.append(",\"text\":\"").append(texts[i]).append('"');
+				}
+				body.append(",\"retweeted_status\":{}}");
+				maxId = Math.max(maxId, ids[i]);
+			}
+			body.append("],\"search_metadata\":{\"max_id_str\":\"").append(maxId).append("\"}}");
+		}
+		return body.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/* Get a decoded query parameter of a URL or null if it is not there
+	 */
+	private static String getParameter(String url, String name) {
+		int query = url.indexOf('?');
+		if (query < 0) {
+			return null;
+		}
+		for (String parameter: url.substring(query + 1).split("&")) {
+			if (parameter.startsWith(name + "=")) {
+				return URLDecoder.decode(parameter.substring(name.length() + 1), StandardCharsets.UTF_8);
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,65 @@
+package com.darrenk.reactivebuzz;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.darrenk.reactivebuzz.github.GitHubRESTClient;
+import com.darrenk.reactivebuzz.twitter.TwitterRESTClient;
+
+public class BuzzDaemonTest {
+	private ApiTransportStub transport;
+	private ConcurrentSearch concurrentSearch;
+	private List<String> published;
+	private BuzzDaemon daemon;
+
+	@Before
+	public void setUp() throws Exception {
+		transport = new ApiTransportStub();
+		concurrentSearch = new ConcurrentSearch(new GitHubRESTClient("user", "password", transport),
+				new TwitterRESTClient("key", "secret", transport), 2);
+		published = Collections.synchronizedList(new ArrayList<String>());
+		ResultSink sink = (project, tweets) -> {
+			for (SearchResult tweet: tweets) {
+				published.add(project.getName() + ":" + tweet.getName());
+			}
+		};
+		daemon = new BuzzDaemon(concurrentSearch, sink, "reactive", 2, 10);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		daemon.close();
+		concurrentSearch.close();
+	}
+
+	@Test
+	public void testRefresh() throws IOException {
+		transport.setRepositories("o/a", "o/b", "o/c");
+		transport.setTweetIds(2, 1);
+		daemon.refreshProjects();
+		assertEquals("Tracked projects", 2, daemon.getProjects().size());
+		assertEquals("Published Tweets", 4, published.size());
+
+		published.clear();
+		transport.setTweetIds(3);
+		daemon.refreshTweets();
+		assertEquals("Only new Tweets published", 2, published.size());
+		assertEquals("New Tweet", "3", published.get(0).substring(published.get(0).indexOf(':') + 1));
+
+		published.clear();
+		daemon.refreshTweets();
+		assertEquals("Nothing new to publish", 0, published.size());
+
+		transport.setTweetIds(1, 2);
+		daemon.refreshTweets();
+		assertEquals("Older Tweets not published again", 0, published.size());
+	}
+}
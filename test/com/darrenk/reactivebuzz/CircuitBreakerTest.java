@@ -0,0 +1,90 @@
+package com.darrenk.reactivebuzz;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+	private CircuitBreaker breaker;
+
+	@Before
+	public void setUp() throws Exception {
+		breaker = new CircuitBreaker("test", 4, 4, 0.5, Duration.ofMillis(100), 2);
+	}
+
+	@Test
+	public void testForApi() {
+		assertSame("Shared breaker", CircuitBreaker.forApi("shared"), CircuitBreaker.forApi("shared"));
+		assertFalse("Separate breakers", CircuitBreaker.forApi("shared") == CircuitBreaker.forApi("other"));
+	}
+
+	@Test
+	public void testOpen() {
+		call(true);
+		call(true);
+		call(false);
+		assertEquals("Too few calls to open", CircuitBreaker.State.CLOSED, breaker.getState());
+		call(false);
+		assertEquals("Half the calls failed", CircuitBreaker.State.OPEN, breaker.getState());
+		assertTrue("Open", breaker.isOpen());
+		assertFalse("Calls rejected", breaker.tryAcquire());
+	}
+
+	@Test
+	public void testWindow() {
+		breaker = new CircuitBreaker("test", 4, 4, 0.75, Duration.ofMillis(100), 2);
+		call(false);
+		call(false);
+		call(true);
+		call(true);
+		assertEquals("Half failed", CircuitBreaker.State.CLOSED, breaker.getState());
+		call(true);
+		assertEquals("Oldest success forgotten", CircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	@Test
+	public void testHalfOpen() throws InterruptedException {
+		open();
+		Thread.sleep(150);
+		assertFalse("Trials allowed", breaker.isOpen());
+		assertTrue("First trial", breaker.tryAcquire());
+		assertEquals("Half open", CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		assertTrue("Second trial", breaker.tryAcquire());
+		assertFalse("Only two trials", breaker.tryAcquire());
+		breaker.onSuccess();
+		assertEquals("One trial to go", CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		breaker.onSuccess();
+		assertEquals("Closed", CircuitBreaker.State.CLOSED, breaker.getState());
+		call(true);
+		assertEquals("Outcomes forgotten on closing", CircuitBreaker.State.CLOSED, breaker.getState());
+
+		open();
+		Thread.sleep(150);
+		assertTrue("Trial", breaker.tryAcquire());
+		breaker.onFailure();
+		assertEquals("Failed trial reopens", CircuitBreaker.State.OPEN, breaker.getState());
+		assertFalse("Calls rejected", breaker.tryAcquire());
+	}
+
+	private void open() {
+		while (breaker.getState() == CircuitBreaker.State.CLOSED) {
+			call(true);
+		}
+		assertEquals("Open", CircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	private void call(boolean failure) {
+		assertTrue("Call permitted", breaker.tryAcquire());
+		if (failure) {
+			breaker.onFailure();
+		} else {
+			breaker.onSuccess();
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package com.darrenk.reactivebuzz;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.darrenk.reactivebuzz.github.GitHubRESTClient;
+import com.darrenk.reactivebuzz.github.Repository;
+import com.darrenk.reactivebuzz.trace.Span;
+import com.darrenk.reactivebuzz.trace.Tracer;
+import com.darrenk.reactivebuzz.twitter.Tweet;
+import com.darrenk.reactivebuzz.twitter.TwitterRESTClient;
+
+public class ConcurrentSearchTest {
+	private ApiTransportStub transport;
+	private ConcurrentSearch concurrentSearch;
+
+	@Before
+	public void setUp() throws Exception {
+		transport = new ApiTransportStub();
+		concurrentSearch = new ConcurrentSearch(new GitHubRESTClient("user", "password", transport),
+				new TwitterRESTClient("key", "secret", transport), 2);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		concurrentSearch.close();
+	}
+
+	@Test
+	public void testDemultiplex() {
+		List<SearchResult> projects = Arrays.<SearchResult>asList(repository("ReactiveX/RxJava"),
+				repository("reactor/reactor"), repository("akka/akka-stream"));
+		List<SearchResult> tweets = Arrays.<SearchResult>asList(tweet("1", "RxJava 3 from reactivex is out"),
+				tweet("2", "Trying reactor today"), tweet("3", "akka-stream by akka and rxjava"), tweet("4", "Nothing here"));
+		List<List<SearchResult>> projectTweets = ConcurrentSearch.demultiplex(projects, tweets);
+		assertEquals("Owner and name", Arrays.asList(tweets.get(0)), projectTweets.get(0));
+		assertEquals("Owner and name", Arrays.asList(tweets.get(1)), projectTweets.get(1));
+		assertEquals("Owner and name", Arrays.asList(tweets.get(2)), projectTweets.get(2));
+
+		tweets = Arrays.<SearchResult>asList(tweet("5", "akka-stream and rxjava are fun"));
+		projectTweets = ConcurrentSearch.demultiplex(projects.subList(0, 2), tweets);
+		assertEquals("Name only", tweets, projectTweets.get(0));
+		assertTrue("No match", projectTweets.get(1).isEmpty());
+
+		projects = Arrays.<SearchResult>asList(repository("reactor/reactor"), repository("reactor/reactor-core"),
+				repository("o/rx"));
+		tweets = Arrays.<SearchResult>asList(tweet("6", "reactor-core 3.4 is out."), tweet("7", "Trying #rxjava today"));
+		projectTweets = ConcurrentSearch.demultiplex(projects, tweets);
+		assertTrue("Whole words only", projectTweets.get(0).isEmpty());
+		assertEquals("Whole name", Arrays.asList(tweets.get(0)), projectTweets.get(1));
+		assertTrue("Not part of a word", projectTweets.get(2).isEmpty());
+	}
+
+	@Test
+	public void testSearch() throws IOException {
+		transport.setRepositories("o/alpha", "o/beta", "o/gamma");
+		transport.setTweets("first", "second");
+		Map<SearchResult, SearchResults> results = concurrentSearch.search("reactive", 10, 10);
+		assertEquals("Projects", 3, results.size());
+		for (SearchResults tweets: results.values()) {
+			assertEquals("Tweets per project", 2, tweets.size());
+		}
+		assertEquals("One Twitter search per project", new HashSet<String>(Arrays.asList(
+				"github o alpha", "github o beta", "github o gamma")), new HashSet<String>(transport.getTwitterQueries()));
+	}
+
+	@Test
+	public void testMaxProjects() throws IOException {
+		transport.setRepositories("o/a", "o/b", "o/c", "o/d", "o/e");
+		transport.setTweets("first");
+		Map<SearchResult, SearchResults> results = concurrentSearch.search("reactive", 2, 10);
+		assertEquals("Projects", 2, results.size());
+		assertEquals("No searches beyond the cut-off", 2, transport.getTwitterQueries().size());
+	}
+
+	@Test
+	public void testBatchedSearch() throws IOException {
+		transport.setRepositories("o/alpha", "o/beta", "o/gamma");
+		transport.setTweets("alpha by o", "beta by o", "o/alpha again");
+		concurrentSearch.setBatchQueryLength(TwitterRESTClient.MAX_QUERY_LENGTH);
+		Map<SearchResult, SearchResults> results = concurrentSearch.search("reactive", 3, 10);
+		assertEquals("One Twitter search", 1, transport.getTwitterQueries().size());
+		assertEquals("Combined query", "(github o alpha) OR (github o beta) OR (github o gamma)",
+				transport.getTwitterQueries().get(0));
+		assertEquals("Projects with Tweets", 2, results.size());
+		for (Map.Entry<SearchResult, SearchResults> result: results.entrySet()) {
+			assertEquals("Tweets for " + result.getKey().getName(),
+					result.getKey().getName().equals("o/alpha") ? 2 : 1, result.getValue().size());
+		}
+
+		transport.getTwitterQueries().clear();
+		concurrentSearch.setBatchQueryLength("(github o alpha) OR (github o beta)".length());
+		concurrentSearch.search("reactive", 3, 10);
+		assertEquals("Batches limited by query length", 2, transport.getTwitterQueries().size());
+	}
+
+	@Test
+	public void testBatchedPoll() throws IOException {
+		transport.setTweets("a", "b", "c", "d", "e", "f", "alpha by o", "beta by o");
+		TwitterRESTClient twitterClient = new TwitterRESTClient("key", "secret", transport);
+		try (ConcurrentSearch batched = new ConcurrentSearch(new GitHubRESTClient("user", "password", transport),
+				twitterClient, 2)) {
+			batched.setIncremental(true);
+			batched.setBatchQueryLength(TwitterRESTClient.MAX_QUERY_LENGTH);
+			twitterClient.setSinceId("github o alpha", 5);
+			twitterClient.setSinceId("github o beta", 7);
+			// Left by a poll of the same batch before the projects were grouped differently
+			twitterClient.setSinceId("(github o alpha) OR (github o beta)", 100);
+			Map<SearchResult, SearchResults> results = batched.searchTweets(
+					Arrays.<SearchResult>asList(repository("o/alpha"), repository("o/beta")), 10);
+			assertEquals("Polled from the lowest watermark", "5", transport.getSinceIds().get(0));
+			assertEquals("Projects with new Tweets", 2, results.size());
+		}
+	}
+
+	@Test
+	public void testIncrementalSearch() throws IOException {
+		transport.setRepositories("o/alpha", "o/beta");
+		transport.setPushedAt("2015-03-02T00:00:00Z", "2015-03-01T00:00:00Z");
+		transport.setTweets("alpha by o");
+		concurrentSearch.setIncremental(true);
+		concurrentSearch.search("reactive", 2, 10);
+		assertEquals("Full search", "reactive", transport.getGithubQueries().get(0));
+
+		concurrentSearch.search("reactive", 2, 10);
+		assertEquals("Search pushed since the latest push", "reactive pushed:>=2015-03-02T00:00:00Z",
+				transport.getGithubQueries().get(1));
+	}
+
+	@Test
+	public void testTracedSearch() throws IOException {
+		transport.setRepositories("o/alpha", "o/beta");
+		transport.setTweets("alpha by o");
+		GitHubRESTClient githubClient = new GitHubRESTClient("user", "password", transport);
+		TwitterRESTClient twitterClient = new TwitterRESTClient("key", "secret", transport);
+		Tracer tracer = new Tracer();
+		githubClient.setTracer(tracer);
+		twitterClient.setTracer(tracer);
+		try (ConcurrentSearch traced = new ConcurrentSearch(githubClient, twitterClient, 2)) {
+			traced.setTracer(tracer);
+			traced.search("reactive", 2, 10);
+		}
+
+		Map<Long, Span> spans = new HashMap<Long, Span>();
+		for (Span span: tracer.getSpans()) {
+			spans.put(span.getId(), span);
+		}
+		Span run = null;
+		int projects = 0;
+		int twitterPages = 0;
+		for (Span span: spans.values()) {
+			if (span.getName().equals("search")) {
+				run = span;
+			}
+		}
+		assertNotNull("Search span", run);
+		for (Span span: spans.values()) {
+			if (span.getName().equals("project")) {
+				projects++;
+				assertEquals("Project in the search", run.getId(), span.getParentId());
+			} else if (span.getName().equals("api.github.com/search/repositories")) {
+				assertEquals("GitHub page in the search", run.getId(), span.getParentId());
+			} else if (span.getName().equals("api.twitter.com/1.1/search/tweets.json")) {
+				twitterPages++;
+				assertEquals("Twitter page in a project", "project", spans.get(span.getParentId()).getName());
+			}
+		}
+		assertEquals("Project spans", 2, projects);
+		assertEquals("Twitter page spans", 2, twitterPages);
+	}
+
+	private static Repository repository(String name) {
+		return new Repository(name.substring(name.indexOf('/') + 1), name, null, null, null);
+	}
+
+	private static Tweet tweet(String id, String text) {
+		return new Tweet(id, text, null, null);
+	}
+}
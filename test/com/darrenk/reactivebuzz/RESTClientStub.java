@@ -1,6 +1,7 @@
 package com.darrenk.reactivebuzz;
 
 import java.io.IOException;
+import java.time.Duration;
 
 import org.json.simple.JSONObject;
 
@@ -10,14 +11,28 @@ public class RESTClientStub extends AbstractRESTClient {
 
 	private int resultsToSkip = 0;
 	private boolean hasNextPage = true;
+	private final TransportStub transport;
+	private final RateLimitGovernor rateLimitGovernor = new RateLimitGovernor("stub");
+	private final CircuitBreaker circuitBreaker = new CircuitBreaker("stub", 4, 4, 0.5, Duration.ofMillis(200), 1);
+	private long remainingSearchRequests;
+	private long searchResetTimeSecs;
 	
 	public RESTClientStub(String key, String token, String baseApiUrl) {
-		super(key, token, baseApiUrl);
-		this.connection = new URLConnectionStub();
+		this(key, token, baseApiUrl, new TransportStub());
+	}
+
+	private RESTClientStub(String key, String token, String baseApiUrl, TransportStub transport) {
+		super(key, token, baseApiUrl, transport);
+		this.transport = transport;
 	}
 
 	public RESTClientStub(String baseApiUrl) {
-		super(baseApiUrl);
+		this(baseApiUrl, new TransportStub());
+	}
+
+	public RESTClientStub(String baseApiUrl, TransportStub transport) {
+		super(baseApiUrl, transport);
+		this.transport = transport;
 	}
 
 	@Override
@@ -26,11 +41,11 @@ public class RESTClientStub extends AbstractRESTClient {
 	}
 
 	@Override
-	protected void setRequestProperties() {
+	protected void setRequestProperties(RESTExchange exchange) {
 	}
 
 	@Override
-	protected String getNextPageUrl(JSONObject queryResult) {
+	protected String getNextPageUrl(RESTExchange exchange) {
 		return hasNextPage ? "next/page" : null;
 	}
 	
@@ -48,15 +63,27 @@ public class RESTClientStub extends AbstractRESTClient {
 	}
 	
 	@Override
-	protected void setSearchRateLimits() {
+	protected void setSearchRateLimits(RESTExchange exchange) {
 	}
 
-	public void setSearchResetTimeSecs(Long searchResetTimeSecs) {
-		this.searchResetTime = searchResetTimeSecs;
+	@Override
+	protected RateLimitGovernor getRateLimitGovernor() {
+		return rateLimitGovernor;
+	}
+
+	@Override
+	protected CircuitBreaker getCircuitBreaker(String endpoint) {
+		return circuitBreaker;
+	}
+
+	public void setSearchResetTimeSecs(long searchResetTimeSecs) {
+		this.searchResetTimeSecs = searchResetTimeSecs;
+		updateSearchRateLimits(remainingSearchRequests, searchResetTimeSecs);
 	}
 	
 	public void setRemainingSearchRequests(long remainingSearchRequests) {
 		this.remainingSearchRequests = remainingSearchRequests;
+		updateSearchRateLimits(remainingSearchRequests, searchResetTimeSecs);
 	}
 	
 	@Override
@@ -73,9 +100,8 @@ public class RESTClientStub extends AbstractRESTClient {
 		return new Repository(result);
 	}
 
-	@Override
-	protected void createConnection(String url, String method) throws IOException {
-		setRequestProperties();
+	public TransportStub getTransport() {
+		return transport;
 	}
 
 }
@@ -0,0 +1,108 @@
+package com.darrenk.reactivebuzz;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class RateLimitGovernorTest {
+	private RateLimitGovernor governor;
+
+	@Before
+	public void setUp() throws Exception {
+		governor = new RateLimitGovernor("test");
+	}
+
+	@Test
+	public void testForApi() {
+		assertSame("Shared governor", RateLimitGovernor.forApi("shared"), RateLimitGovernor.forApi("shared"));
+		assertFalse("Separate governors", RateLimitGovernor.forApi("shared") == RateLimitGovernor.forApi("other"));
+	}
+
+	@Test
+	public void testAcquire() {
+		assertTrue("Not limited before the first update", governor.acquire().isDone());
+		assertFalse("Not exhausted", governor.isExhausted());
+
+		governor.update(2, nowSecs() + 60);
+		assertTrue("First request", governor.acquire().isDone());
+		assertTrue("Second request", governor.acquire().isDone());
+		assertTrue("Exhausted", governor.isExhausted());
+		CompletableFuture<Void> third = governor.acquire();
+		assertFalse("Third request waits", third.isDone());
+		assertEquals("Waiting requests", 1, governor.getWaitingCount());
+	}
+
+	@Test
+	public void testUpdateReleasesWaiting() throws Exception {
+		governor.update(0, nowSecs() + 60);
+		CompletableFuture<Void> first = governor.acquire();
+		CompletableFuture<Void> second = governor.acquire();
+		assertFalse("Waiting", first.isDone() || second.isDone());
+
+		governor.update(1, nowSecs() + 120);
+		first.get(1, TimeUnit.SECONDS);
+		assertFalse("Second request waits", second.isDone());
+		assertEquals("Remaining", 0, governor.getRemaining());
+	}
+
+	@Test
+	public void testUpdateInFlight() throws Exception {
+		long resetTime = nowSecs() + 60;
+		governor.update(5, resetTime);
+		for (int i = 0; i < 5; i++) {
+			assertTrue("Request " + i, governor.acquire().isDone());
+		}
+		// The first response does not count the four requests still in flight
+		governor.update(4, resetTime);
+		assertEquals("Budget kept", 0, governor.getRemaining());
+		CompletableFuture<Void> sixth = governor.acquire();
+		assertFalse("Sixth request waits", sixth.isDone());
+
+		governor.update(10, resetTime - 60);
+		assertFalse("Earlier window ignored", sixth.isDone());
+		assertEquals("Reset time kept", resetTime, governor.getResetTime());
+
+		governor.update(3, resetTime + 60);
+		sixth.get(1, TimeUnit.SECONDS);
+		assertEquals("New window", 2, governor.getRemaining());
+	}
+
+	@Test
+	public void testReleaseAtReset() throws Exception {
+		governor.update(0, nowSecs() + 1);
+		CompletableFuture<Void> request = governor.acquire();
+		assertFalse("Waiting", request.isDone());
+		// Released by the scheduler once the reset time passes
+		request.get(3, TimeUnit.SECONDS);
+		assertTrue("Released", request.isDone());
+	}
+
+	@Test
+	public void testPacing() throws Exception {
+		governor.setPacing(true);
+		assertTrue("Pacing", governor.isPacing());
+		// 4 requests over about 2 seconds, so one request every half second
+		long start = System.currentTimeMillis();
+		governor.update(4, (start + 2000) / 1000 + 1);
+		assertTrue("First request", governor.acquire().isDone());
+		CompletableFuture<Void> second = governor.acquire();
+		assertFalse("Second request is paced", second.isDone());
+		second.get(3, TimeUnit.SECONDS);
+		assertTrue("Second request waited", System.currentTimeMillis() - start >= 400);
+		assertEquals("Remaining", 2, governor.getRemaining());
+
+		governor.setPacing(false);
+		assertTrue("Third request is not paced", governor.acquire().isDone());
+	}
+
+	private static long nowSecs() {
+		return System.currentTimeMillis() / 1000;
+	}
+}
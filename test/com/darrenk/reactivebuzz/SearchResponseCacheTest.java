@@ -0,0 +1,113 @@
+package com.darrenk.reactivebuzz;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.darrenk.reactivebuzz.exception.SearchException;
+
+public class SearchResponseCacheTest {
+	private SearchResponseCache cache;
+	private RESTClientStub cli;
+
+	@Before
+	public void setUp() throws Exception {
+		cache = new SearchResponseCache(1024 * 1024);
+		cli = new RESTClientStub("ab", "cd", "efg");
+		cli.setHasNextPage(false);
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEviction() {
+		cache = new SearchResponseCache(10);
+		cache.put(new RESTExchange("a", "GET"), new byte[4], 60000);
+		cache.put(new RESTExchange("b", "GET"), new byte[4], 60000);
+		assertNotNull("Use a", cache.get("a"));
+		cache.put(new RESTExchange("c", "GET"), new byte[4], 60000);
+		assertEquals("Cached responses", 2, cache.size());
+		assertEquals("Cached bytes", 8, cache.getBytes());
+		assertNull("Least recently used evicted", cache.get("b"));
+		assertNotNull("Recently used kept", cache.get("a"));
+
+		cache.put(new RESTExchange("d", "GET"), new byte[11], 60000);
+		assertNull("Too large to cache", cache.get("d"));
+		assertEquals("Cached responses", 2, cache.size());
+	}
+
+	@Test
+	public void testRevalidate() {
+		RESTExchange exchange = new RESTExchange("a", "GET");
+		exchange.addResponseHeader("Link", Collections.singletonList("next"));
+		exchange.addResponseHeader("X-RateLimit-Remaining", Collections.singletonList("5"));
+		SearchResponseCache.Entry entry = cache.put(exchange, new byte[] {1, 2}, 0);
+		assertFalse("Expired", entry.isFresh());
+		assertNull("No ETag", entry.getETag());
+
+		RESTExchange notModified = new RESTExchange("a", "GET");
+		notModified.addResponseHeader("x-ratelimit-remaining", Collections.singletonList("4"));
+		notModified.addResponseHeader("ETag", Collections.singletonList("\"v1\""));
+		entry = cache.revalidate(entry, notModified, 60000);
+		assertTrue("Fresh", entry.isFresh());
+		assertArrayEquals("Body", new byte[] {1, 2}, entry.getBody());
+		assertEquals("Cached header", "next", entry.getHeaders().get("link").get(0));
+		assertEquals("Updated header", "4", entry.getHeaders().get("X-RateLimit-Remaining").get(0));
+		assertEquals("ETag", "\"v1\"", entry.getETag());
+	}
+
+	@Test
+	public void testFreshSearch() throws IOException {
+		cli.setResponseCache(cache, 60);
+		assertEquals("Number of results", 5, cli.search("search/search", "find me").size());
+		assertEquals("Cached responses", 1, cache.size());
+		cli.setRemainingSearchRequests(0);
+		cli.setSearchResetTimeSecs(System.currentTimeMillis() / 1000 + 60);
+		assertEquals("Number of cached results", 5, cli.search("search/search", "find me").size());
+		assertEquals("Requests sent", 1, cli.getTransport().getRequestCount());
+	}
+
+	@Test
+	public void testFreshSearchAsync() throws InterruptedException, ExecutionException {
+		cli.setResponseCache(cache, 60);
+		assertEquals("Number of results", 5, cli.searchAsync("search/search", "find me").get().size());
+		assertEquals("Number of cached results", 5, cli.searchAsync("search/search", "find me").get().size());
+		assertEquals("Requests sent", 1, cli.getTransport().getRequestCount());
+	}
+
+	@Test
+	public void testRevalidatedSearch() throws IOException, InterruptedException, ExecutionException {
+		cli.setResponseCache(cache, 0);
+		cli.getTransport().setETag("\"v1\"");
+		assertEquals("Number of results", 5, cli.search("search/search", "find me").size());
+		assertEquals("Number of revalidated results", 5, cli.search("search/search", "find me").size());
+		assertEquals("Number of revalidated results", 5, cli.searchAsync("search/search", "find me").get().size());
+		assertEquals("Requests sent", 3, cli.getTransport().getRequestCount());
+
+		cli.getTransport().setETag("\"v2\"");
+		assertEquals("Number of modified results", 5, cli.search("search/search", "find me").size());
+		assertEquals("Modified ETag cached", "\"v2\"", cache.get("efgsearch/searchfind+me").getETag());
+	}
+
+	@Test
+	public void testErrorNotCached() throws IOException {
+		cli.setResponseCache(cache, 60);
+		cli.getTransport().setResponseCode(400);
+		try {
+			cli.search("search/search", "find me");
+			fail("Expected SearchException");
+		} catch (SearchException e) {
+			// Ok!
+		}
+		assertEquals("Cached responses", 0, cache.size());
+	}
+}
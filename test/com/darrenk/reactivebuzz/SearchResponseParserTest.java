@@ -0,0 +1,82 @@
+package com.darrenk.reactivebuzz;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.junit.Test;
+
+import com.darrenk.reactivebuzz.exception.SearchException;
+
+public class SearchResponseParserTest {
+
+	private static final String response = "{\n" +
+			"\t\"statuses\": [\n" +
+			"\t\t{\"id_str\":\"1\", \"text\":\"a } brace and a \\\"quote\\\" ]\"},\n" +
+			"\t\t{\"id_str\":\"2\", \"entities\":{\"urls\":[1, 2, {\"x\":null}]}}\n" +
+			"\t],\n" +
+			"\t\"search_metadata\": {\"next_results\":\"?max_id=1&q=x\", \"count\":100},\n" +
+			"\t\"incomplete_results\": false,\n" +
+			"\t\"total\": 42\n" +
+			"}";
+
+	private List<JSONObject> results = new ArrayList<JSONObject>();
+	private List<String> resultsText = new ArrayList<String>();
+
+	private JSONObject parse(String json) throws IOException {
+		return new SearchResponseParser(new StringReader(json)).parse("statuses", (result, text) -> {
+			results.add(result);
+			resultsText.add(text);
+		});
+	}
+
+	@Test
+	public void testParse() throws IOException {
+		JSONObject envelope = parse(response);
+		assertEquals("Number of results", 2, results.size());
+		assertEquals("First result", "a } brace and a \"quote\" ]", results.get(0).get("text"));
+		JSONObject full = (JSONObject) JSONValue.parse(response);
+		assertEquals("Second result", ((List<?>) full.get("statuses")).get(1), results.get(1));
+		assertEquals("Second result text", "{\"id_str\":\"2\", \"entities\":{\"urls\":[1, 2, {\"x\":null}]}}",
+				resultsText.get(1));
+
+		assertFalse("Results are not kept", envelope.containsKey("statuses"));
+		assertEquals("Metadata", full.get("search_metadata"), envelope.get("search_metadata"));
+		assertEquals("Boolean member", Boolean.FALSE, envelope.get("incomplete_results"));
+		assertEquals("Number member", 42L, envelope.get("total"));
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		assertTrue("Empty object", parse(" {} ").isEmpty());
+		JSONObject envelope = parse("{\"statuses\":[], \"search_metadata\":{}}");
+		assertEquals("Number of results", 0, results.size());
+		assertEquals("Metadata", new JSONObject(), envelope.get("search_metadata"));
+	}
+
+	@Test
+	public void testMalformed() throws IOException {
+		String[] malformed = new String[] {
+				"",
+				"[]",
+				"{\"statuses\":[{\"id_str\":\"1\"}",
+				"{\"statuses\":[\"not an object\"]}",
+				"{\"statuses\":[{\"text\":\"unterminated}]}" };
+		for (String json: malformed) {
+			try {
+				parse(json);
+				fail("Expected SearchException for " + json);
+			} catch (SearchException e) {
+				// Ok!
+			}
+		}
+	}
+}
@@ -1,12 +1,15 @@
 package com.darrenk.reactivebuzz;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
 
 import org.json.simple.JSONObject;
 import org.json.simple.JSONValue;
@@ -14,6 +17,8 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.darrenk.reactivebuzz.exception.CircuitOpenException;
+import com.darrenk.reactivebuzz.exception.SearchException;
 import com.darrenk.reactivebuzz.twitter.Tweet;
 
 public class SearchResultsTest {
@@ -44,14 +49,14 @@ public class SearchResultsTest {
 	}
 
 	/**
-	 * Test method for {@link com.darrenk.reactivebuzz.SearchResults#SearchResults(com.darrenk.reactivebuzz.AbstractRESTClient, java.util.Collection, boolean)}.
+	 * Test method for {@link com.darrenk.reactivebuzz.SearchResults#SearchResults(com.darrenk.reactivebuzz.AbstractRESTClient, java.util.List, java.lang.String)}.
 	 */
 	@Test
 	public void testSearchResults() {
-		SearchResults s = new SearchResults(cli, results, false);
+		SearchResults s = new SearchResults(cli, results, null);
 		assertEquals("Number of results", results.size(), s.size());
 
-		s = new SearchResults(cli, results, true);
+		s = new SearchResults(cli, results, "next/page");
 		assertEquals("Number of results", results.size(), s.size());
 	}
 
@@ -60,12 +65,31 @@ public class SearchResultsTest {
 	 */
 	@Test
 	public void testAddAll() {
-		SearchResults s = new SearchResults(cli, results, false);
+		SearchResults s = new SearchResults(cli, results, null);
 		assertEquals("Number of results", results.size(), s.size());
-		s.addAll(new SearchResults(cli, results, false));
+		s.addAll(new SearchResults(cli, results, null));
 		assertEquals("Number of results", results.size(), s.size());
-		s.addAll(new SearchResults(cli, results, true));
+		assertFalse("Has next page", s.hasNextPage());
+		s.addAll(new SearchResults(cli, results, "next/page"));
 		assertEquals("Number of results", results.size(), s.size());
+		assertTrue("Has next page", s.hasNextPage());
+	}
+
+	/**
+	 * Test method for {@link com.darrenk.reactivebuzz.SearchResults#merge(java.util.Collection)}.
+	 */
+	@Test
+	public void testMerge() {
+		SearchResults s = new SearchResults(cli, new ArrayList<SearchResult>(), "next/page");
+		assertTrue("Changed", s.merge(results));
+		assertEquals("Number of results", 1, s.size());
+		ArrayList<SearchResult> stored = new ArrayList<SearchResult>();
+		stored.add(new Tweet("efgh5678", "text", "user", null));
+		stored.add(new Tweet(tweet));
+		assertTrue("Changed", s.merge(stored));
+		assertFalse("Unchanged", s.merge(stored));
+		assertEquals("Number of results", 2, s.size());
+		assertTrue("Has next page", s.hasNextPage());
 	}
 
 	/**
@@ -73,7 +97,7 @@ public class SearchResultsTest {
 	 */
 	@Test
 	public void testIterator() {
-		SearchResults s = new SearchResults(cli, results, false);
+		SearchResults s = new SearchResults(cli, results, null);
 		Iterator<SearchResult> iter = s.iterator();
 		int nResults = 0;
 		while (iter.hasNext()) {
@@ -115,12 +139,173 @@ public class SearchResultsTest {
 		assertEquals("Number of results", results.size()*4, nResults);		
 	}
 
+	/**
+	 * Test method for {@link com.darrenk.reactivebuzz.SearchResults#setPrefetchThreshold(int)}.
+	 */
+	@Test
+	public void testPrefetch() throws IOException {
+		SearchResults s = cli.search("123", "find me");
+		s.setPrefetchThreshold(2);
+		Iterator<SearchResult> iter = s.iterator();
+		int nResults = 0;
+		while (nResults < results.size() - 3) {
+			iter.next();
+			nResults++;
+		}
+		assertEquals("Requests before the threshold", 1, cli.getTransport().getRequestCount());
+		iter.next();
+		nResults++;
+		assertEquals("Next page requested at the threshold", 2, cli.getTransport().getRequestCount());
+		assertEquals("Prefetched page not added yet", results.size(), s.size());
+
+		cli.setHasNextPage(false);
+		while (iter.hasNext()) {
+			iter.next();
+			nResults++;
+		}
+		assertEquals("Number of results", results.size() * 3, nResults);
+		assertEquals("Requests", 3, cli.getTransport().getRequestCount());
+	}
+
+	/**
+	 * Test method for {@link com.darrenk.reactivebuzz.SearchResults#setPartialResults(boolean)}.
+	 */
+	@Test
+	public void testPartialResults() throws Exception {
+		SearchResults s = cli.search("123", "find me");
+		cli.getTransport().setResponseCode(500);
+		try {
+			s.iterator().forEachRemaining(result -> {});
+			fail("Expected SearchException");
+		} catch (SearchException e) {
+			// Ok!
+		}
+
+		s.setPartialResults(true);
+		int nResults = 0;
+		for (Iterator<SearchResult> iter = s.iterator(); iter.hasNext(); iter.next()) {
+			nResults++;
+		}
+		assertEquals("Results before the failed page", results.size(), nResults);
+		assertFalse("Iteration ended at the failed page", s.hasNextPage());
+		assertFalse("Not complete", s.isComplete());
+		assertEquals("Failed page", "next/page", s.getFailedPageUrls().get(0));
+
+		cli.getTransport().setResponseCode(200);
+		assertTrue("Refetched", s.refetchFailedPagesAsync().get());
+		assertTrue("Complete", s.isComplete());
+		assertTrue("Iteration resumes", s.hasNextPage());
+		cli.setHasNextPage(false);
+		nResults = 0;
+		for (Iterator<SearchResult> iter = s.iterator(); iter.hasNext(); iter.next()) {
+			nResults++;
+		}
+		assertEquals("Number of results", results.size() * 3, nResults);
+	}
+
+	/**
+	 * Test method for {@link com.darrenk.reactivebuzz.SearchResults#setPartialResults(boolean)}
+	 * when the circuit breaker is open.
+	 */
+	@Test
+	public void testPartialResultsCircuitOpen() throws Exception {
+		cli.setCircuitBreaking(true);
+		SearchResults s = cli.search("123", "find me");
+		s.setPartialResults(true);
+		cli.getTransport().setResponseCode(503);
+		for (int i = 0; i < 3; i++) {
+			try {
+				cli.search("123", "other");
+				fail("Expected SearchException");
+			} catch (SearchException e) {
+				// Ok!
+			}
+		}
+		try {
+			s.iterator().forEachRemaining(result -> {});
+			fail("Expected CircuitOpenException");
+		} catch (CircuitOpenException e) {
+			// Ok!
+		}
+		assertTrue("No failed pages recorded", s.getFailedPageUrls().isEmpty());
+	}
+
+	/**
+	 * Test method for {@link com.darrenk.reactivebuzz.SearchResults#setRetainedPages(int)}.
+	 */
+	@Test
+	public void testRetainedPages() throws IOException {
+		SearchResults s = cli.search("123", "find me");
+		s.setRetainedPages(2);
+		Iterator<SearchResult> iter = s.iterator();
+		int nResults = 0;
+		while (nResults < results.size() * 5) {
+			iter.next();
+			nResults++;
+			assertTrue("Retained results", s.getResults().size() <= results.size() * 2);
+		}
+		assertEquals("Number of results", results.size() * 5, s.size());
+		assertEquals("Retained results", results.size() * 2, s.getResults().size());
+
+		try {
+			s.iterator().next();
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			// Ok!
+		}
+	}
+
+	/**
+	 * Test method for {@link com.darrenk.reactivebuzz.SearchResults#stream()}.
+	 */
+	@Test
+	public void testStream() throws IOException {
+		SearchResults s = cli.search("123", "find me");
+		s.setRetainedPages(1);
+		assertEquals("Limited stream", results.size() * 3, s.stream().limit(results.size() * 3).count());
+		cli.setHasNextPage(false);
+		s = cli.search("123", "find me");
+		assertEquals("Whole stream", results.size(), s.stream().count());
+	}
+
+	@Test
+	public void testSpliterator() throws IOException {
+		SearchResults s = cli.search("123", "find me");
+		Spliterator<SearchResult> spliterator = s.spliterator();
+		int characteristics = spliterator.characteristics();
+		Spliterator<SearchResult> half = spliterator.trySplit();
+		int remaining = results.size() / 2;
+		assertEquals("Half of the retrieved page handed out", results.size() - remaining, half.estimateSize());
+		assertTrue("Handed out half is sized", half.hasCharacteristics(Spliterator.SIZED));
+		assertEquals("More pages", Long.MAX_VALUE, spliterator.estimateSize());
+
+		cli.setHasNextPage(false);
+		for (int i = 0; i <= remaining; i++) {
+			assertTrue("Advance", spliterator.tryAdvance(result -> {}));
+		}
+		assertEquals("Same characteristics after retrieving the last page", characteristics,
+				spliterator.characteristics());
+		assertFalse("Not sized", spliterator.hasCharacteristics(Spliterator.SIZED));
+		half = spliterator.trySplit();
+		assertEquals("Last page split in half", (results.size() - 1) / 2, half.estimateSize());
+		assertEquals("Remaining half", results.size() - 1 - (results.size() - 1) / 2, spliterator.estimateSize());
+
+		cli.setHasNextPage(true);
+		s = cli.search("123", "find me");
+		cli.setHasNextPage(false);
+		s.setRetainedPages(1);
+		assertEquals("Parallel count", results.size() * 2, s.parallelStream().count());
+		s = cli.search("123", "find me");
+		assertEquals("Parallel names", s.stream().map(SearchResult::getName).reduce("", String::concat),
+				s.parallelStream().map(SearchResult::getName).reduce("", String::concat));
+	}
+
 	/**
 	 * Test method for {@link com.darrenk.reactivebuzz.SearchResults#size()}.
 	 */
 	@Test
 	public void testSize() {
-		SearchResults s = new SearchResults(cli, results, false);
+		SearchResults s = new SearchResults(cli, results, null);
 		assertEquals("Number of results", results.size(), s.size());
 	}
 
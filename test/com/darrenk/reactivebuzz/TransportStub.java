@@ -0,0 +1,77 @@
+package com.darrenk.reactivebuzz;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.darrenk.reactivebuzz.transport.HttpTransport;
+
+public class TransportStub implements HttpTransport {
+
+	protected int responseCode = HttpURLConnection.HTTP_OK;
+	private volatile String etag;
+	private final AtomicInteger requestCount = new AtomicInteger();
+	private final AtomicInteger transientFailures = new AtomicInteger();
+	
+	@Override
+	public InputStream send(RESTExchange exchange) throws IOException {
+		return new ByteArrayInputStream(getBody(exchange));
+	}
+
+	@Override
+	public CompletableFuture<byte[]> sendAsync(RESTExchange exchange) {
+		return CompletableFuture.completedFuture(getBody(exchange));
+	}
+	
+	/* Return a JSON array string, an error, or not modified if the request ETag matches
+	 */
+	private byte[] getBody(RESTExchange exchange) {
+		requestCount.incrementAndGet();
+		if (etag != null) {
+			exchange.addResponseHeader(SearchResponseCache.HEADER_ETAG, Collections.singletonList(etag));
+			if (etag.equals(exchange.getRequestHeaders().get(AbstractRESTClient.HEADER_IF_NONE_MATCH))) {
+				exchange.setResponseCode(HttpURLConnection.HTTP_NOT_MODIFIED);
+				return new byte[0];
+			}
+		}
+		if (transientFailures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+			exchange.setResponseCode(HttpURLConnection.HTTP_UNAVAILABLE);
+			exchange.addResponseHeader(RetryPolicy.HEADER_RETRY_AFTER, Collections.singletonList("0"));
+			return "{\"error\":\"try again\"}".getBytes();
+		}
+		exchange.setResponseCode(responseCode);
+		if (responseCode != HttpURLConnection.HTTP_OK) {
+			return "{\"error\":\"something went wrong\"}".getBytes();
+		}
+		return AbstractRESTClientTest.jsonResults.getBytes();
+	}
+	
+	public int getResponseCode() {
+		return this.responseCode;
+	}
+	
+	public void setResponseCode(int responseCode) {
+		this.responseCode = responseCode;
+	}
+
+	public void setETag(String etag) {
+		this.etag = etag;
+	}
+
+	/**
+	 * Answer the next requests with 503 Service Unavailable
+	 * @param count The number of requests that fail
+	 */
+	public void setTransientFailures(int count) {
+		transientFailures.set(count);
+	}
+
+	public int getRequestCount() {
+		return requestCount.get();
+	}
+
+}
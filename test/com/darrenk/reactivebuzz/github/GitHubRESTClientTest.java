@@ -0,0 +1,178 @@
+package com.darrenk.reactivebuzz.github;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.darrenk.reactivebuzz.RESTExchange;
+import com.darrenk.reactivebuzz.SearchResult;
+import com.darrenk.reactivebuzz.SearchResults;
+import com.darrenk.reactivebuzz.transport.HttpTransport;
+
+public class GitHubRESTClientTest {
+	private GitHubTransportStub transport;
+	private GitHubRESTClient cli;
+
+	@Before
+	public void setUp() throws Exception {
+		transport = new GitHubTransportStub();
+		cli = new GitHubRESTClient("user", "password", transport);
+	}
+
+	@Test
+	public void testPollNewRepositories() throws IOException {
+		SearchResults results = new SearchResults(cli, new ArrayList<SearchResult>(), null);
+		transport.pages.add(page("2015-03-02T00:00:00Z", "2015-03-01T00:00:00Z"));
+		assertTrue("First poll", cli.pollNewRepositories("reactive", results));
+		assertEquals("First page only", 1, transport.urls.size());
+		assertEquals("Number of results", 2, results.size());
+		assertEquals("Watermark", "2015-03-02T00:00:00Z", cli.getPushedSince("reactive"));
+
+		transport.pages.add(page("2015-03-04T00:00:00Z", "2015-03-03T00:00:00Z"));
+		transport.pages.add(page("2015-03-02T00:00:00Z"));
+		transport.pages.add(page("2015-02-01T00:00:00Z"));
+		assertTrue("Second poll", cli.pollNewRepositories("reactive", results));
+		assertTrue("Narrowed to new pushes", transport.urls.get(1).endsWith("q=reactive pushed:>=2015-03-02T00:00:00Z"));
+		assertEquals("Stopped at the known repositories", 3, transport.urls.size());
+		transport.pages.clear();
+		assertEquals("Number of results", 4, results.size());
+		assertEquals("Watermark", "2015-03-04T00:00:00Z", cli.getPushedSince("reactive"));
+
+		cli.setPushedSince("reactive", "2015-01-01T00:00:00Z");
+		assertEquals("Earlier times do not replace the watermark", "2015-03-04T00:00:00Z", cli.getPushedSince("reactive"));
+		transport.pages.add("{\"items\":[]}");
+		assertFalse("No new repositories", cli.pollNewRepositories("reactive", results));
+	}
+
+	@Test
+	public void testPartialResults() throws Exception {
+		transport.pages.add("{\"incomplete_results\":true,\"items\":[{\"full_name\":\"o/a\"}]}");
+		transport.pages.add(page("2015-03-02T00:00:00Z"));
+		transport.pages.add(page("2015-03-01T00:00:00Z"));
+		transport.failedUrls.add("https://api.github.com/next?page=2");
+		SearchResults results = cli.searchRepositories("reactive");
+		results.setPartialResults(true);
+		int nResults = 0;
+		for (Iterator<SearchResult> iter = results.iterator(); iter.hasNext(); iter.next()) {
+			nResults++;
+		}
+		assertEquals("Failed page skipped", 3, nResults);
+		assertEquals("Following page requested", "https://api.github.com/next?page=3", transport.urls.get(2));
+		assertEquals("Incomplete pages", 1, results.getIncompletePageCount());
+		assertEquals("Failed pages", Collections.singletonList("https://api.github.com/next?page=2"),
+				results.getFailedPageUrls());
+		assertFalse("Not complete", results.isComplete());
+
+		transport.failedUrls.clear();
+		transport.pages.add(page("2015-02-01T00:00:00Z"));
+		assertTrue("Refetched", results.refetchFailedPagesAsync().get());
+		assertEquals("Number of results", 4, results.size());
+		assertTrue("No failed pages", results.getFailedPageUrls().isEmpty());
+		assertFalse("Still incomplete", results.isComplete());
+	}
+
+	@Test
+	public void testConsecutiveFailedPages() throws Exception {
+		transport.pages.add(page("2015-03-02T00:00:00Z"));
+		transport.pages.add(page("2015-03-01T00:00:00Z"));
+		transport.failedUrls.add("https://api.github.com/next?page=2");
+		transport.failedUrls.add("https://api.github.com/next?page=3");
+		SearchResults results = cli.searchRepositories("reactive");
+		results.setPartialResults(true);
+		results.iterator().forEachRemaining(result -> {});
+		assertEquals("Two failed pages skipped", 2, results.size());
+		assertEquals("Failed pages", 2, results.getFailedPageUrls().size());
+		assertEquals("Page after the failed pages", "https://api.github.com/next?page=4", transport.urls.get(3));
+
+		transport.urls.clear();
+		transport.pages.clear();
+		transport.pages.add(page("2015-03-02T00:00:00Z"));
+		transport.pages.add(page("2015-03-01T00:00:00Z"));
+		transport.failedUrls.add("https://api.github.com/next?page=4");
+		results = cli.searchRepositories("reactive");
+		results.setPartialResults(true);
+		results.iterator().forEachRemaining(result -> {});
+		assertEquals("Iteration ends at the third failed page", 1, results.size());
+		assertEquals("Failed pages", Arrays.asList("https://api.github.com/next?page=2",
+				"https://api.github.com/next?page=3", "https://api.github.com/next?page=4"), results.getFailedPageUrls());
+		assertEquals("No page after the third failed page", 4, transport.urls.size());
+		assertFalse("No next page", results.hasNextPage());
+	}
+
+	@Test
+	public void testPushedAt() {
+		Repository repository = new Repository("p", "o/p", "url", null, null);
+		assertNull("No push time", repository.getPushedAt());
+	}
+
+	/* A search response page of repositories named after their push time
+	 */
+	private static String page(String... pushedAt) {
+		StringBuilder page = new StringBuilder("{\"items\":[");
+		for (int i = 0; i < pushedAt.length; i++) {
+			if (i > 0) {
+				page.append(',');
+			}
+			page.append("{\"name\":\"p\",\"full_name\":\"o/").append(pushedAt[i])
+					.append("\",\"pushed_at\":\"").append(pushedAt[i]).append("\"}");
+		}
+		return page.append("]}").toString();
+	}
+
+	/**
+	 * Returns queued search pages, each linking to a numbered next page while more are queued,
+	 * or a server error for failed URLs
+	 */
+	private static final class GitHubTransportStub implements HttpTransport {
+		private final List<String> pages = new ArrayList<String>();
+		private final List<String> urls = new ArrayList<String>();
+		private final Set<String> failedUrls = new HashSet<String>();
+
+		@Override
+		public InputStream send(RESTExchange exchange) throws IOException {
+			return new ByteArrayInputStream(getBody(exchange));
+		}
+
+		@Override
+		public CompletableFuture<byte[]> sendAsync(RESTExchange exchange) {
+			return CompletableFuture.completedFuture(getBody(exchange));
+		}
+
+		private byte[] getBody(RESTExchange exchange) {
+			String url = exchange.getUrl();
+			urls.add(URLDecoder.decode(url, StandardCharsets.UTF_8));
+			if (failedUrls.contains(url)) {
+				exchange.setResponseCode(HttpURLConnection.HTTP_BAD_GATEWAY);
+				return "{\"message\":\"Server Error\"}".getBytes(StandardCharsets.UTF_8);
+			}
+			exchange.setResponseCode(HttpURLConnection.HTTP_OK);
+			exchange.addResponseHeader("X-RateLimit-Remaining", Collections.singletonList("30"));
+			exchange.addResponseHeader("X-RateLimit-Reset", Collections.singletonList("0"));
+			if (pages.size() > 1) {
+				int page = url.contains("?page=") ? Integer.parseInt(url.substring(url.indexOf("?page=") + 6)) : 1;
+				exchange.addResponseHeader("Link", Collections.singletonList(
+						"<https://api.github.com/next?page=" + (page + 1) + ">; rel=\"next\""));
+			}
+			return pages.remove(0).getBytes(StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package com.darrenk.reactivebuzz.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class InMemoryMetricsRegistryTest {
+
+	@Test
+	public void testHistogram() {
+		Histogram histogram = new Histogram();
+		assertEquals("Empty percentile", 0, histogram.getPercentile(0.5));
+		for (long value = 1; value <= 1000; value++) {
+			histogram.record(value);
+		}
+		assertEquals("Count", 1000, histogram.getCount());
+		assertEquals("Mean", 500.5, histogram.getMean(), 0.001);
+		assertEquals("Min", 1, histogram.getMin());
+		assertEquals("Max", 1000, histogram.getMax());
+		assertEquals("Small values are exact", 5, histogram.getPercentile(0.005));
+		long p50 = histogram.getPercentile(0.5);
+		assertTrue("Median within a bucket: " + p50, p50 >= 500 && p50 <= 500 * 1.125);
+		long p99 = histogram.getPercentile(0.99);
+		assertTrue("99th percentile within a bucket: " + p99, p99 >= 990 && p99 <= 1000);
+		assertEquals("100th percentile", 1000, histogram.getPercentile(1));
+
+		histogram.record(Long.MAX_VALUE);
+		assertEquals("Largest value", Long.MAX_VALUE, histogram.getPercentile(1));
+	}
+
+	@Test
+	public void testRegistry() {
+		InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+		assertNull("Nothing recorded", metrics.getHistogram(MetricsRegistry.RESPONSE_TIME, "a/b"));
+		metrics.record(MetricsRegistry.RESPONSE_TIME, "a/b", TimeUnit.MILLISECONDS.toNanos(2));
+		metrics.record(MetricsRegistry.RESPONSE_BYTES, "a/b", 1024);
+		metrics.increment(MetricsRegistry.PAGES, "a/b", 1);
+		metrics.increment(MetricsRegistry.PAGES, "a/b", 2);
+		metrics.increment(MetricsRegistry.PAGES, "a/c", 1);
+		assertEquals("Pages", 3, metrics.getCount(MetricsRegistry.PAGES, "a/b"));
+		assertEquals("Other endpoint", 1, metrics.getCount(MetricsRegistry.PAGES, "a/c"));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		metrics.report(new PrintStream(out, true));
+		String report = new String(out.toByteArray(), StandardCharsets.UTF_8);
+		assertTrue(report, report.contains("rest.pages a/b count=3"));
+		assertTrue(report, report.contains("rest.response.time a/b count=1 mean=2.000ms"));
+		assertTrue(report, report.contains("rest.response.bytes a/b count=1 mean=1024"));
+	}
+}
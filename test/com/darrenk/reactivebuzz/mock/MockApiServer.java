@@ -0,0 +1,409 @@
+package com.darrenk.reactivebuzz.mock;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+
+import com.darrenk.reactivebuzz.RESTExchange;
+import com.darrenk.reactivebuzz.transport.HttpTransport;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local HTTP server that replays recorded GitHub and Twitter API responses, for testing and
+ * load testing the clients over a real HTTP stack without the network.
+ * Serves GitHub repository searches and rate_limit, and Twitter oauth2/token, search/tweets and
+ * rate_limit_status. Search results are paged through the Link header for GitHub and
+ * search_metadata.next_results for Twitter, and carry the rate limit headers of each API.
+ * Searches beyond the rate limit of a window are refused as the real APIs refuse them.
+ * Responses can be delayed and search responses can fail at a given rate.
+ * Requests for https://host/path are sent to http://localhost:port/host/path by the
+ * transport returned by {@link #transport(HttpTransport)}, so the clients run unchanged.
+ */
+public class MockApiServer implements Closeable {
+	public static final String GITHUB_SEARCH = "github-search-repositories.json";
+	public static final String TWITTER_SEARCH = "twitter-search-tweets.json";
+	private static final String HTTPS = "https://";
+	private static final String GITHUB_HOST = "api.github.com";
+	private static final String TWITTER_HOST = "api.twitter.com";
+	private static final Pattern PAGE_PARAM = Pattern.compile("&page=(\\d+)");
+	private static final Pattern QUERY_PARAM = Pattern.compile("[?&]q=([^&]*)");
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final byte[] githubPage = loadFixture(GITHUB_SEARCH);
+	private final JSONObject twitterPage =
+			(JSONObject) JSONValue.parse(new String(loadFixture(TWITTER_SEARCH), StandardCharsets.UTF_8));
+	private final RateLimitWindow githubRateLimit = new RateLimitWindow();
+	private final RateLimitWindow twitterRateLimit = new RateLimitWindow();
+	private final AtomicInteger requestCount = new AtomicInteger();
+	// Guarded by this
+	private final Random random = new Random();
+	private volatile int githubPages = 1;
+	private volatile int twitterPages = 1;
+	private volatile long minLatencyMillis;
+	private volatile long maxLatencyMillis;
+	private volatile double errorRate;
+	private volatile int errorResponseCode = HttpURLConnection.HTTP_UNAVAILABLE;
+
+	/**
+	 * Start a server on a free loopback port. Requests are handled on a thread each so that
+	 * delayed responses do not hold up other requests.
+	 * @throws IOException
+	 */
+	public MockApiServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		executor = Executors.newCachedThreadPool(r -> {
+			Thread thread = new Thread(r, "MockApiServer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.createContext("/", this::handle);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * Load a recorded response
+	 * @param name The fixture name, such as {@link #GITHUB_SEARCH}
+	 * @return The response body
+	 */
+	public static byte[] loadFixture(String name) {
+		try (InputStream in = MockApiServer.class.getResourceAsStream("fixtures/" + name)) {
+			if (in == null) {
+				throw new IllegalStateException("Missing fixture: " + name);
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @param githubPages The number of GitHub repository search result pages
+	 */
+	public void setGitHubPages(int githubPages) {
+		this.githubPages = githubPages;
+	}
+
+	/**
+	 * @param twitterPages The number of Twitter search result pages
+	 */
+	public void setTwitterPages(int twitterPages) {
+		this.twitterPages = twitterPages;
+	}
+
+	/**
+	 * Delay every response by a random time in a range
+	 * @param min The minimum delay
+	 * @param max The maximum delay
+	 */
+	public void setLatency(Duration min, Duration max) {
+		this.minLatencyMillis = min.toMillis();
+		this.maxLatencyMillis = Math.max(min.toMillis(), max.toMillis());
+	}
+
+	/**
+	 * Fail a fraction of the search responses
+	 * @param errorRate The fraction of search responses that fail, from 0 to 1
+	 * @param responseCode The HTTP response code of a failed response
+	 */
+	public void setErrorRate(double errorRate, int responseCode) {
+		this.errorRate = errorRate;
+		this.errorResponseCode = responseCode;
+	}
+
+	/**
+	 * Set the GitHub search rate limit. GitHub allows 30 authenticated searches a minute.
+	 * @param limit The number of searches allowed in a window
+	 * @param window The rate limit window
+	 */
+	public void setGitHubRateLimit(int limit, Duration window) {
+		githubRateLimit.set(limit, window);
+	}
+
+	/**
+	 * Set the Twitter search rate limit. Twitter allows 450 application searches every 15 minutes.
+	 * @param limit The number of searches allowed in a window
+	 * @param window The rate limit window
+	 */
+	public void setTwitterRateLimit(int limit, Duration window) {
+		twitterRateLimit.set(limit, window);
+	}
+
+	/**
+	 * @param seed Seed for the random latencies and failures, to repeat a run
+	 */
+	public synchronized void setSeed(long seed) {
+		random.setSeed(seed);
+	}
+
+	/**
+	 * @return The number of requests received
+	 */
+	public int getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * @return The URL prefix that replaces "https://"
+	 */
+	public String getBaseUrl() {
+		return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/";
+	}
+
+	/**
+	 * Get a transport that sends requests to this server
+	 * @param delegate The transport that sends the rewritten requests, such as a HttpClientTransport
+	 * @return The transport
+	 */
+	public HttpTransport transport(HttpTransport delegate) {
+		return new HttpTransport() {
+			@Override
+			public InputStream send(RESTExchange exchange) throws IOException {
+				RESTExchange local = toLocal(exchange);
+				InputStream body = delegate.send(local);
+				fromLocal(local, exchange);
+				return body;
+			}
+
+			@Override
+			public CompletableFuture<byte[]> sendAsync(RESTExchange exchange) {
+				RESTExchange local = toLocal(exchange);
+				return delegate.sendAsync(local).thenApply(body -> {
+					fromLocal(local, exchange);
+					return body;
+				});
+			}
+		};
+	}
+
+	/**
+	 * Stop the server
+	 */
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		requestCount.incrementAndGet();
+		try (InputStream request = exchange.getRequestBody()) {
+			while (request.read() != -1) {
+				// Discard the request body
+			}
+		}
+		URI uri = exchange.getRequestURI();
+		String path = uri.getRawPath().substring(1);
+		String url = HTTPS + path + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery());
+		Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+		Response response;
+		try {
+			delay();
+			response = respond(path, url, headers);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			exchange.close();
+			return;
+		}
+		exchange.getResponseHeaders().putAll(headers);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(response.code, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	/* Answer a request for an API path
+	 */
+	private Response respond(String path, String url, Map<String, List<String>> headers) {
+		if (path.startsWith(GITHUB_HOST + "/search/")) {
+			if (!githubRateLimit.take(headers, "X-RateLimit-")) {
+				return new Response(HttpURLConnection.HTTP_FORBIDDEN,
+						"{\"message\":\"API rate limit exceeded\",\"documentation_url\":\"https://developer.github.com/v3/#rate-limiting\"}");
+			}
+			if (fail()) {
+				return new Response(errorResponseCode, "{\"message\":\"Server Error\"}");
+			}
+			int page = getPage(url);
+			if (page < githubPages) {
+				String next = PAGE_PARAM.matcher(url).replaceFirst("") + "&page=" + (page + 1);
+				headers.put("Link", Collections.singletonList("<" + next + ">; rel=\"next\""));
+			}
+			return new Response(HttpURLConnection.HTTP_OK, new String(githubPage, StandardCharsets.UTF_8));
+		}
+		if (path.equals(GITHUB_HOST + "/rate_limit")) {
+			return new Response(HttpURLConnection.HTTP_OK,
+					"{\"resources\":{\"search\":" + githubRateLimit.toJSONString() + "}}");
+		}
+		if (path.equals(TWITTER_HOST + "/oauth2/token")) {
+			return new Response(HttpURLConnection.HTTP_OK, "{\"token_type\":\"bearer\",\"access_token\":\"mock\"}");
+		}
+		if (path.equals(TWITTER_HOST + "/1.1/search/tweets.json")) {
+			if (!twitterRateLimit.take(headers, "X-Rate-Limit-")) {
+				return new Response(429, "{\"errors\":[{\"code\":88,\"message\":\"Rate limit exceeded\"}]}");
+			}
+			if (fail()) {
+				return new Response(errorResponseCode, "{\"errors\":[{\"code\":131,\"message\":\"Internal error\"}]}");
+			}
+			return new Response(HttpURLConnection.HTTP_OK, getTwitterPage(url));
+		}
+		if (path.equals(TWITTER_HOST + "/1.1/application/rate_limit_status.json")) {
+			return new Response(HttpURLConnection.HTTP_OK,
+					"{\"resources\":{\"search\":{\"/search/tweets\":" + twitterRateLimit.toJSONString() + "}}}");
+		}
+		return new Response(HttpURLConnection.HTTP_NOT_FOUND, "{\"message\":\"Not Found\"}");
+	}
+
+	/* The recorded Twitter search page with search_metadata linking to the next page
+	 */
+	@SuppressWarnings("unchecked")
+	private String getTwitterPage(String url) {
+		int page = getPage(url);
+		Matcher query = QUERY_PARAM.matcher(url);
+		JSONObject searchMetadata = new JSONObject();
+		searchMetadata.putAll((JSONObject) twitterPage.get("search_metadata"));
+		if (page < twitterPages) {
+			searchMetadata.put("next_results", "?max_id=" + searchMetadata.get("max_id_str")
+					+ "&q=" + (query.find() ? query.group(1) : "") + "&count=100&result_type=recent&page=" + (page + 1));
+		}
+		JSONObject response = new JSONObject();
+		response.putAll(twitterPage);
+		response.put("search_metadata", searchMetadata);
+		return response.toJSONString();
+	}
+
+	private static int getPage(String url) {
+		Matcher page = PAGE_PARAM.matcher(url);
+		return page.find() ? Integer.parseInt(page.group(1)) : 1;
+	}
+
+	private void delay() throws InterruptedException {
+		long latency;
+		synchronized (this) {
+			latency = minLatencyMillis + (maxLatencyMillis > minLatencyMillis ?
+					(long) (random.nextDouble() * (maxLatencyMillis - minLatencyMillis)) : 0);
+		}
+		if (latency > 0) {
+			Thread.sleep(latency);
+		}
+	}
+
+	private synchronized boolean fail() {
+		return errorRate > 0 && random.nextDouble() < errorRate;
+	}
+
+	/* Copy an exchange with its URL pointing at this server
+	 */
+	private RESTExchange toLocal(RESTExchange exchange) {
+		String url = exchange.getUrl();
+		RESTExchange local = new RESTExchange(url.startsWith(HTTPS) ?
+				getBaseUrl() + url.substring(HTTPS.length()) : url, exchange.getMethod());
+		for (Map.Entry<String, String> header: exchange.getRequestHeaders().entrySet()) {
+			local.setRequestHeader(header.getKey(), header.getValue());
+		}
+		local.setBody(exchange.getBody());
+		return local;
+	}
+
+	/* Copy the response code and headers of a local exchange back to the original
+	 */
+	private static void fromLocal(RESTExchange local, RESTExchange exchange) {
+		exchange.setResponseCode(local.getResponseCode());
+		for (Map.Entry<String, List<String>> header: local.getResponseHeaders().entrySet()) {
+			exchange.addResponseHeader(header.getKey(), header.getValue());
+		}
+	}
+
+	/**
+	 * A response code and JSON body
+	 */
+	private static final class Response {
+		private final int code;
+		private final String body;
+
+		Response(int code, String body) {
+			this.code = code;
+			this.body = body;
+		}
+	}
+
+	/**
+	 * Counts the searches made in the current rate limit window
+	 */
+	private static final class RateLimitWindow {
+		private int limit = Integer.MAX_VALUE;
+		private long windowMillis = Duration.ofMinutes(15).toMillis();
+		private long resetMillis;
+		private int used;
+
+		synchronized void set(int limit, Duration window) {
+			this.limit = limit;
+			this.windowMillis = window.toMillis();
+			this.resetMillis = 0;
+		}
+
+		/* Take a search from the window, adding the rate limit headers. Returns false if none are left. */
+		synchronized boolean take(Map<String, List<String>> headers, String headerPrefix) {
+			roll();
+			boolean allowed = used < limit;
+			if (allowed) {
+				used++;
+			}
+			headers.put(headerPrefix + "Limit", Collections.singletonList(String.valueOf(limit)));
+			headers.put(headerPrefix + "Remaining", Collections.singletonList(String.valueOf(limit - used)));
+			headers.put(headerPrefix + "Reset", Collections.singletonList(String.valueOf(resetMillis / 1000)));
+			return allowed;
+		}
+
+		@SuppressWarnings("unchecked")
+		synchronized String toJSONString() {
+			roll();
+			JSONObject json = new JSONObject();
+			json.put("limit", Long.valueOf(limit));
+			json.put("remaining", Long.valueOf(limit - used));
+			json.put("reset", Long.valueOf(resetMillis / 1000));
+			return json.toJSONString();
+		}
+
+		/* Start a new window once the current one has ended */
+		private void roll() {
+			long now = System.currentTimeMillis();
+			if (now >= resetMillis) {
+				resetMillis = now + windowMillis;
+				used = 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package com.darrenk.reactivebuzz.mock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.time.Duration;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.darrenk.reactivebuzz.RESTExchange;
+import com.darrenk.reactivebuzz.SearchResult;
+import com.darrenk.reactivebuzz.SearchResults;
+import com.darrenk.reactivebuzz.exception.SearchException;
+import com.darrenk.reactivebuzz.github.GitHubRESTClient;
+import com.darrenk.reactivebuzz.transport.HttpClientTransport;
+import com.darrenk.reactivebuzz.transport.HttpTransport;
+import com.darrenk.reactivebuzz.twitter.TwitterRESTClient;
+
+public class MockApiServerTest {
+	private MockApiServer server;
+	private HttpTransport transport;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new MockApiServer();
+		server.setSeed(1);
+		transport = server.transport(new HttpClientTransport());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.close();
+	}
+
+	@Test
+	public void testPaging() throws IOException {
+		server.setGitHubPages(3);
+		server.setTwitterPages(2);
+		int nRepositories = 0;
+		for (SearchResult repository: new GitHubRESTClient("user", "password", transport).searchRepositories("reactive")) {
+			assertTrue("Repository name", repository.getName().contains("/"));
+			nRepositories++;
+		}
+		assertEquals("Repositories on every page", 90, nRepositories);
+
+		TwitterRESTClient twitterClient = new TwitterRESTClient("key", "secret", transport);
+		SearchResults tweets = twitterClient.searchTweets("github reactor reactor-core");
+		assertTrue("Next page", twitterClient.getNextSearchResults(tweets));
+		assertEquals("Retweets on every page", 40, tweets.size());
+		assertTrue("Last page", !tweets.hasNextPage());
+	}
+
+	@Test
+	public void testRateLimit() throws IOException {
+		// Sent without a client, which would wait for the window to reset
+		server.setGitHubRateLimit(2, Duration.ofMinutes(1));
+		RESTExchange exchange = search();
+		assertEquals("First search", HttpURLConnection.HTTP_OK, exchange.getResponseCode());
+		assertEquals("Limit header", "2", exchange.getResponseHeader("X-RateLimit-Limit"));
+		assertEquals("Remaining header", "1", exchange.getResponseHeader("X-RateLimit-Remaining"));
+		long reset = Long.parseLong(exchange.getResponseHeader("X-RateLimit-Reset"));
+		assertTrue("Reset in the window", reset <= System.currentTimeMillis() / 1000 + 60);
+		assertEquals("Last search", HttpURLConnection.HTTP_OK, search().getResponseCode());
+		exchange = search();
+		assertEquals("Refused", HttpURLConnection.HTTP_FORBIDDEN, exchange.getResponseCode());
+		assertEquals("Remaining header", "0", exchange.getResponseHeader("X-RateLimit-Remaining"));
+	}
+
+	private RESTExchange search() throws IOException {
+		RESTExchange exchange = new RESTExchange("https://api.github.com/search/repositories?q=reactive", "GET");
+		transport.send(exchange).close();
+		return exchange;
+	}
+
+	@Test
+	public void testErrorRate() throws IOException {
+		server.setErrorRate(1, HttpURLConnection.HTTP_UNAVAILABLE);
+		try {
+			new GitHubRESTClient("user", "password", transport).searchRepositories("reactive");
+			fail("Expected SearchException");
+		} catch (SearchException e) {
+			// Ok!
+		}
+	}
+
+	@Test
+	public void testLatency() throws IOException {
+		server.setLatency(Duration.ofMillis(100), Duration.ofMillis(150));
+		long start = System.nanoTime();
+		new GitHubRESTClient("user", "password", transport).searchRepositories("reactive");
+		assertTrue("Delayed", System.nanoTime() - start >= Duration.ofMillis(100).toNanos());
+		assertEquals("Requests", 1, server.getRequestCount());
+	}
+}
@@ -0,0 +1,106 @@
+package com.darrenk.reactivebuzz.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.darrenk.reactivebuzz.SearchResult;
+import com.darrenk.reactivebuzz.github.Repository;
+import com.darrenk.reactivebuzz.twitter.Tweet;
+
+public class ResultStoreTest {
+	private Path file;
+	private ResultStore store;
+
+	@Before
+	public void setUp() throws Exception {
+		file = Files.createTempFile("ReactiveBuzz", ".store");
+		Files.delete(file);
+		store = new ResultStore(file);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		store.close();
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testPutGet() throws IOException {
+		store.put("reactive", new Repository("whirled-peas", "testuser/whirled-peas",
+				"https://nowhere.github.com/testuser/whirled-peas", null, "http://www.google.com", "2015-03-01T12:00:00Z"));
+		store.put("testuser/whirled-peas", new Tweet("1234", "Whirled peas \u2615", "testuser", "Mon Sep 24 03:35:21 +0000 2012"));
+		assertEquals("Number of results", 2, store.size());
+
+		Repository repository = (Repository) store.get("testuser/whirled-peas");
+		assertEquals("Project name", "whirled-peas", repository.getProjectName());
+		assertEquals("HTML URL", "https://nowhere.github.com/testuser/whirled-peas", repository.getHtmlUrl());
+		assertNull("Description", repository.getDescription());
+		assertEquals("Homepage", "http://www.google.com", repository.getHomepage());
+		assertEquals("Pushed at", "2015-03-01T12:00:00Z", repository.getPushedAt());
+
+		Tweet tweet = (Tweet) store.get("1234");
+		assertEquals("Text", "Whirled peas \u2615", tweet.getText());
+		assertEquals("User", "testuser", tweet.getUserScreenName());
+		assertEquals("Created at", "Mon Sep 24 03:35:21 +0000 2012", tweet.getCreatedAt());
+		assertNull("Not stored", store.get("5678"));
+	}
+
+	@Test
+	public void testReopen() throws IOException {
+		store.put("project", new Tweet("1", "one", "a", null));
+		store.put("project", new Tweet("2", "two", "b", null));
+		store.put("other", new Tweet("3", "three", "c", null));
+		store.put("project", new Tweet("1", "one", "a", null));
+		store.put("project", new Tweet("2", "two updated", "b", null));
+		store.close();
+
+		store = new ResultStore(file);
+		assertEquals("Number of results", 3, store.size());
+		assertEquals("Groups", 2, store.getGroups().size());
+		List<SearchResult> group = store.getGroup("project");
+		assertEquals("Group size", 2, group.size());
+		assertEquals("First result", "1", group.get(0).getName());
+		assertEquals("Updated result", "two updated", ((Tweet) group.get(1)).getText());
+		assertTrue("Unknown group", store.getGroup("unknown").isEmpty());
+	}
+
+	@Test
+	public void testGrow() throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			text.append("0123456789");
+		}
+		for (int i = 0; i < 200; i++) {
+			store.put("project", new Tweet(Integer.toString(i), text.toString(), "user", null));
+		}
+		store.close();
+		store = new ResultStore(file);
+		assertEquals("Number of results", 200, store.size());
+		assertEquals("Last result", text.toString(), ((Tweet) store.get("199")).getText());
+	}
+
+	@Test
+	public void testNotAStore() throws IOException {
+		Path other = Files.createTempFile("ReactiveBuzz", ".txt");
+		try {
+			Files.write(other, "not a result store".getBytes());
+			new ResultStore(other).close();
+			fail("Expected IOException");
+		} catch (IOException e) {
+			// Ok!
+		} finally {
+			Files.delete(other);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package com.darrenk.reactivebuzz.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.junit.Test;
+
+public class TracerTest {
+
+	@Test
+	public void testNesting() throws Exception {
+		Tracer tracer = new Tracer();
+		try (Span run = tracer.start("run", "run")) {
+			try (Span page = tracer.start("page", "rest")) {
+				assertSame("Current span", page, tracer.current());
+				assertEquals("Nested in the current span", run.getId(), page.getParentId());
+			}
+			assertSame("Parent restored", run, tracer.current());
+			Span async = tracer.startAsync("async", "rest");
+			assertSame("Asynchronous span is not current", run, tracer.current());
+			CompletableFuture.runAsync(() -> {
+				try (Span project = tracer.start("project", "project", run)) {
+					assertEquals("Nested across threads", run.getId(), project.getParentId());
+				}
+				async.close();
+			}).get();
+			assertEquals("Asynchronous span parent", run.getId(), async.getParentId());
+		}
+		assertNull("No current span", tracer.current());
+		List<Span> spans = tracer.getSpans();
+		assertEquals("Ended spans", 4, spans.size());
+		assertEquals("Ended last", "run", spans.get(3).getName());
+		assertTrue("Duration", spans.get(3).getDurationNanos() > 0);
+	}
+
+	@Test
+	public void testChromeTrace() throws IOException {
+		Tracer tracer = new Tracer();
+		try (Span span = tracer.start("api.github.com/search/repositories", "rest")) {
+			span.tag("status", 200).tag("url", "https://api.github.com/search/repositories?q=a");
+		}
+		StringWriter out = new StringWriter();
+		tracer.writeChromeTrace(out);
+		JSONObject trace = (JSONObject) JSONValue.parse(out.toString());
+		JSONArray events = (JSONArray) trace.get("traceEvents");
+		assertEquals("Span and thread name events", 2, events.size());
+		JSONObject event = (JSONObject) events.get(0);
+		assertEquals("Name", "api.github.com/search/repositories", event.get("name"));
+		assertEquals("Complete event", "X", event.get("ph"));
+		assertEquals("Thread", Thread.currentThread().getId(), event.get("tid"));
+		JSONObject args = (JSONObject) event.get("args");
+		assertEquals("Numeric tag", 200L, args.get("status"));
+		assertEquals("Thread name", "M", ((JSONObject) events.get(1)).get("ph"));
+	}
+
+	@Test
+	public void testLimits() {
+		Tracer tracer = new Tracer(1);
+		tracer.start("a", "run").close();
+		tracer.start("b", "run").close();
+		assertEquals("Spans kept", 1, tracer.getSpans().size());
+		assertEquals("Spans dropped", 1, tracer.getDroppedCount());
+
+		Span span = Tracer.NOOP.start("a", "run").tag("key", "value");
+		assertNull("Disabled tracer has no current span", Tracer.NOOP.current());
+		span.close();
+		assertTrue("Disabled tracer records nothing", Tracer.NOOP.getSpans().isEmpty());
+		assertTrue("Disabled span has no tags", span.getTags().isEmpty());
+	}
+}
@@ -0,0 +1,101 @@
+package com.darrenk.reactivebuzz.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.darrenk.reactivebuzz.RESTExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class HttpClientTransportTest {
+	private static final byte[] BODY = "{\"items\":[]}".getBytes(StandardCharsets.UTF_8);
+
+	private HttpServer server;
+	private ExecutorService executor;
+	private final CountDownLatch release = new CountDownLatch(1);
+	private HttpClientTransport transport;
+
+	@Before
+	public void setUp() throws Exception {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		executor = Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		server.createContext("/ok", exchange -> {
+			exchange.sendResponseHeaders(200, BODY.length);
+			try (OutputStream body = exchange.getResponseBody()) {
+				body.write(BODY);
+			}
+		});
+		// Sends the headers and part of the body and then stalls
+		server.createContext("/stall", exchange -> {
+			exchange.sendResponseHeaders(200, BODY.length);
+			OutputStream body = exchange.getResponseBody();
+			body.write(BODY, 0, 4);
+			body.flush();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			exchange.close();
+		});
+		server.start();
+		transport = new HttpClientTransport(Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofMillis(200));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		release.countDown();
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testBody() throws Exception {
+		try (InputStream body = transport.send(exchange("/ok"))) {
+			assertEquals("Body", new String(BODY, StandardCharsets.UTF_8),
+					new String(body.readAllBytes(), StandardCharsets.UTF_8));
+		}
+		assertEquals("Async body", BODY.length, transport.sendAsync(exchange("/ok")).get().length);
+	}
+
+	@Test
+	public void testReadTimeout() throws Exception {
+		long start = System.nanoTime();
+		try (InputStream body = transport.send(exchange("/stall"))) {
+			body.readAllBytes();
+			fail("Expected HttpTimeoutException");
+		} catch (HttpTimeoutException e) {
+			// Ok!
+		}
+		try {
+			transport.sendAsync(exchange("/stall")).get();
+			fail("Expected HttpTimeoutException");
+		} catch (ExecutionException e) {
+			assertTrue("Async read timeout", e.getCause() instanceof HttpTimeoutException);
+		}
+		assertTrue("Failed at the read deadline", System.nanoTime() - start < Duration.ofSeconds(4).toNanos());
+	}
+
+	private RESTExchange exchange(String path) {
+		return new RESTExchange("http://" + server.getAddress().getHostString() + ":"
+				+ server.getAddress().getPort() + path, "GET");
+	}
+}
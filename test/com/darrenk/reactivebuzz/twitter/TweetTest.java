@@ -2,6 +2,7 @@ package com.darrenk.reactivebuzz.twitter;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 
 import org.json.simple.JSONObject;
 import org.json.simple.JSONValue;
@@ -15,9 +16,19 @@ public class TweetTest {
 	private static final String tweetString =
 		"{" + // Representation of Tweet JSON
 				"\"id_str\":\"" + jsonName + "\"" +
+				"\"text\":\"whirled-peas on github\"" +
+				"\"created_at\":\"Mon Sep 24 03:35:21 +0000 2012\"" +
+				"\"user\":{\"screen_name\":\"testuser\",\"followers_count\":70}" +
 				"\"some_other_field\":1234" +
 				"\"another_field\":[5,6,7,8]" +
 		"}";
+	private static final String compactTweetString =
+		"{" + // The Tweet JSON fields retained by a Tweet
+				"\"id_str\":\"" + jsonName + "\"" +
+				"\"text\":\"whirled-peas on github\"" +
+				"\"created_at\":\"Mon Sep 24 03:35:21 +0000 2012\"" +
+				"\"user\":{\"screen_name\":\"testuser\"}" +
+		"}";
 	
 	private JSONObject tweet;
 	
@@ -39,7 +50,8 @@ public class TweetTest {
 	@Test
 	public void testGetJSON() {
 		Tweet t = new Tweet(tweet);
-		assertEquals("Tweet JSON object", tweet, t.getJSON());
+		assertEquals("Tweet JSON object", JSONValue.parse(compactTweetString), t.getJSON());
+		assertEquals("Empty Tweet JSON object", new JSONObject(), new Tweet(new JSONObject()).getJSON());
 	}
 
 	@Test
@@ -48,7 +60,25 @@ public class TweetTest {
 		 * So reparse back to JSON objects to compare. */
 		
 		Tweet t = new Tweet(tweet);
-		assertEquals("Tweet JSON string", (JSONObject) JSONValue.parse(tweetString), (JSONObject) JSONValue.parse(t.getJSONString()));
+		assertEquals("Tweet JSON string", (JSONObject) JSONValue.parse(compactTweetString), (JSONObject) JSONValue.parse(t.getJSONString()));
+	}
+
+	@Test
+	public void testGetRawJSONString() {
+		Tweet t = new Tweet(tweet, tweetString);
+		assertSame("Raw Tweet JSON string", tweetString, t.getJSONString());
+		assertEquals("Tweet JSON object", JSONValue.parse(compactTweetString), t.getJSON());
+
+		t = new Tweet(tweet);
+		assertSame("Serialized Tweet JSON string is reused", t.getJSONString(), t.getJSONString());
+	}
+
+	@Test
+	public void testGetFields() {
+		Tweet t = new Tweet(tweet);
+		assertEquals("Tweet text", "whirled-peas on github", t.getText());
+		assertEquals("Tweet user", "testuser", t.getUserScreenName());
+		assertEquals("Tweet created at", "Mon Sep 24 03:35:21 +0000 2012", t.getCreatedAt());
 	}
 
 	@Test
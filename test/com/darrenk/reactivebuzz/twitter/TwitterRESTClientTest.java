@@ -0,0 +1,157 @@
+package com.darrenk.reactivebuzz.twitter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.darrenk.reactivebuzz.CircuitBreaker;
+import com.darrenk.reactivebuzz.RESTExchange;
+import com.darrenk.reactivebuzz.SearchResult;
+import com.darrenk.reactivebuzz.SearchResults;
+import com.darrenk.reactivebuzz.exception.CircuitOpenException;
+import com.darrenk.reactivebuzz.exception.SearchException;
+import com.darrenk.reactivebuzz.transport.HttpTransport;
+
+public class TwitterRESTClientTest {
+	private TwitterTransportStub transport;
+	private TwitterRESTClient cli;
+
+	@Before
+	public void setUp() throws Exception {
+		transport = new TwitterTransportStub();
+		cli = new TwitterRESTClient("key", "secret", transport);
+	}
+
+	@Test
+	public void testSinceIdWatermark() throws IOException {
+		assertNull("No watermark", cli.getSinceId("github a b"));
+		transport.pages.add(page(null, 12, 11));
+		SearchResults results = cli.searchTweets("github a b");
+		assertEquals("Number of results", 2, results.size());
+		assertEquals("Watermark", Long.valueOf(12), cli.getSinceId("github a b"));
+
+		cli.setSinceId("github a b", 10);
+		assertEquals("Lower ids do not replace the watermark", Long.valueOf(12), cli.getSinceId("github a b"));
+	}
+
+	@Test
+	public void testPollNewTweets() throws IOException {
+		transport.pages.add(page(null, 12, 11));
+		SearchResults results = new SearchResults(cli, new ArrayList<SearchResult>(), null);
+		assertTrue("First poll", cli.pollNewTweets("github a b", results));
+		assertEquals("Number of results", 2, results.size());
+
+		transport.pages.add(page("?max_id=13&q=github%20a%20b", 15, 14));
+		transport.pages.add(page(null, 13));
+		assertTrue("Second poll", cli.pollNewTweets("github a b", results));
+		assertEquals("Number of results", 5, results.size());
+		assertTrue("Polled since the watermark", transport.urls.get(1).contains("since_id=12"));
+		assertTrue("Paged since the watermark", transport.urls.get(2).contains("since_id=12"));
+		assertEquals("Watermark", Long.valueOf(15), cli.getSinceId("github a b"));
+
+		transport.pages.add(page(null));
+		assertFalse("No new Tweets", cli.pollNewTweets("github a b", results));
+		assertTrue("Polled since the new watermark", transport.urls.get(3).contains("since_id=15"));
+		assertEquals("Number of results", 5, results.size());
+	}
+
+	@Test
+	public void testBearerTokenCircuitBreaker() throws IOException {
+		CircuitBreaker breaker = new CircuitBreaker("oauth2", 2, 2, 0.5, Duration.ofMinutes(1), 1);
+		TwitterRESTClient client = new TwitterRESTClient("key", "secret", transport) {
+			@Override
+			protected CircuitBreaker getCircuitBreaker(String endpoint) {
+				return breaker;
+			}
+		};
+		client.setCircuitBreaking(true);
+		assertEquals("Token requested with the first call", 0, transport.tokenRequests);
+		transport.tokenResponseCode = HttpURLConnection.HTTP_UNAVAILABLE;
+		for (int i = 0; i < 2; i++) {
+			try {
+				client.searchTweets("github a b");
+				fail("Expected SearchException");
+			} catch (CircuitOpenException e) {
+				fail("Breaker not open yet");
+			} catch (SearchException e) {
+				// Ok!
+			}
+		}
+		try {
+			client.searchTweets("github a b");
+			fail("Expected CircuitOpenException");
+		} catch (CircuitOpenException e) {
+			// Ok!
+		}
+		assertEquals("No token request while open", 2, transport.tokenRequests);
+		assertTrue("No search sent", transport.urls.isEmpty());
+	}
+
+	/* A search response page of retweets with the given ids
+	 */
+	private static String page(String nextResults, long... ids) {
+		StringBuilder page = new StringBuilder("{\"statuses\":[");
+		long maxId = 0;
+		for (int i = 0; i < ids.length; i++) {
+			if (i > 0) {
+				page.append(',');
+			}
+			page.append("{\"id_str\":\"").append(ids[i]).append("\",\"text\":\"t\",\"retweeted_status\":{}}");
+			maxId = Math.max(maxId, ids[i]);
+		}
+		page.append("],\"search_metadata\":{\"max_id_str\":\"").append(maxId).append('"');
+		if (nextResults != null) {
+			page.append(",\"next_results\":\"").append(nextResults).append('"');
+		}
+		return page.append("}}").toString();
+	}
+
+	/**
+	 * Answers the OAuth2 token request and then returns queued search pages
+	 */
+	private static final class TwitterTransportStub implements HttpTransport {
+		private final List<String> pages = new ArrayList<String>();
+		private final List<String> urls = new ArrayList<String>();
+		private int tokenRequests;
+		private int tokenResponseCode = HttpURLConnection.HTTP_OK;
+
+		@Override
+		public InputStream send(RESTExchange exchange) throws IOException {
+			return new ByteArrayInputStream(getBody(exchange));
+		}
+
+		@Override
+		public CompletableFuture<byte[]> sendAsync(RESTExchange exchange) {
+			return CompletableFuture.completedFuture(getBody(exchange));
+		}
+
+		private byte[] getBody(RESTExchange exchange) {
+			exchange.setResponseCode(HttpURLConnection.HTTP_OK);
+			if (exchange.getUrl().endsWith("oauth2/token")) {
+				tokenRequests++;
+				exchange.setResponseCode(tokenResponseCode);
+				return "{\"token_type\":\"bearer\",\"access_token\":\"token\"}".getBytes(StandardCharsets.UTF_8);
+			}
+			urls.add(exchange.getUrl());
+			exchange.addResponseHeader("X-Rate-Limit-Remaining", Collections.singletonList("100"));
+			exchange.addResponseHeader("X-Rate-Limit-Reset", Collections.singletonList("0"));
+			return pages.remove(0).getBytes(StandardCharsets.UTF_8);
+		}
+	}
+}